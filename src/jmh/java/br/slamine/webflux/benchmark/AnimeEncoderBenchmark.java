@@ -0,0 +1,107 @@
+package br.slamine.webflux.benchmark;
+
+import br.slamine.webflux.codec.AnimeJsonEncoder;
+import br.slamine.webflux.codec.CodecMediaTypes;
+import br.slamine.webflux.domain.Anime;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Response encoding of animes into pooled Netty buffers, like Reactor Netty gives them: the Jackson2JsonEncoder
+ * set up by WebFluxCodecConfig (ObjectMapper configured like Spring Boot's) against AnimeJsonEncoder.
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="AnimeEncoderBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnimeEncoderBenchmark {
+    private static final ResolvableType ANIME = ResolvableType.forClass(Anime.class);
+
+    @Param({"jackson", "anime"})
+    private String encoderName;
+
+    private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+    private Encoder<Anime> encoder;
+    private Anime anime;
+    private List<Anime> animes;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        if ("jackson".equals(encoderName)) {
+            ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                    .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                    .build();
+            Jackson2JsonEncoder jacksonEncoder = new Jackson2JsonEncoder(objectMapper,
+                    MediaType.APPLICATION_JSON, CodecMediaTypes.APPLICATION_NDJSON);
+            jacksonEncoder.setStreamingMediaTypes(List.of(CodecMediaTypes.APPLICATION_NDJSON));
+            encoder = (Encoder<Anime>) (Encoder<?>) jacksonEncoder;
+        } else {
+            encoder = new AnimeJsonEncoder();
+        }
+        Instant updatedAt = Instant.parse("2020-07-01T10:15:30.123456Z");
+        anime = Anime.builder().id(42).name("Tensei Shitara Slime Datta Ken").updatedAt(updatedAt).version(3L).build();
+        animes = IntStream.rangeClosed(1, 100)
+                .mapToObj(i -> Anime.builder().id(i).name("Anime " + i).updatedAt(updatedAt).version(0L).build())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * GET /animes/{id}
+     */
+    @Benchmark
+    public int encodeAnime() {
+        return release(encoder.encodeValue(anime, bufferFactory, ANIME, MediaType.APPLICATION_JSON, Map.of()));
+    }
+
+    /**
+     * A Flux of animes as one JSON array, e.g. POST /animes/batch
+     */
+    @Benchmark
+    public int encodeAnimes() {
+        return encodeAll(MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * A Flux of animes as NDJSON, one buffer per anime
+     */
+    @Benchmark
+    public int encodeAnimesNdjson() {
+        return encodeAll(CodecMediaTypes.APPLICATION_NDJSON);
+    }
+
+    private int encodeAll(MimeType mimeType) {
+        return encoder.encode(Flux.fromIterable(animes), bufferFactory, ANIME, mimeType, Map.of())
+                .map(this::release)
+                .reduce(0, Integer::sum)
+                .block();
+    }
+
+    private int release(DataBuffer buffer) {
+        int bytes = buffer.readableByteCount();
+        DataBufferUtils.release(buffer);
+        return bytes;
+    }
+}
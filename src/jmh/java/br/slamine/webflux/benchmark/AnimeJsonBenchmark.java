@@ -0,0 +1,46 @@
+package br.slamine.webflux.benchmark;
+
+import br.slamine.webflux.domain.Anime;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Jackson serialization of animes, configured like the ObjectMapper Spring Boot creates
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnimeJsonBenchmark {
+    private ObjectMapper objectMapper;
+    private Anime anime;
+    private List<Anime> animes;
+
+    @Setup
+    public void setup() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        anime = Anime.builder().id(42).name("Tensei Shitara Slime Datta Ken").build();
+        animes = IntStream.rangeClosed(1, 100)
+                .mapToObj(i -> Anime.builder().id(i).name("Anime " + i).build())
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public byte[] writeAnime() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(anime);
+    }
+
+    @Benchmark
+    public byte[] writeAnimes() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(animes);
+    }
+}
@@ -0,0 +1,68 @@
+package br.slamine.webflux.benchmark;
+
+import br.slamine.webflux.config.AnimeProperties;
+import br.slamine.webflux.domain.Anime;
+import br.slamine.webflux.service.AnimeBatchLoader;
+import br.slamine.webflux.service.AnimeCache;
+import br.slamine.webflux.service.AnimeSearchIndex;
+import br.slamine.webflux.service.AnimeService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * AnimeService against an in-memory repository: what is left is the cost of the service itself
+ * (cache, operators, validation)
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnimeServiceBenchmark {
+    @Param({"1000"})
+    private int size;
+
+    private AnimeService animeService;
+    private List<Anime> batch;
+    private int id;
+
+    @Setup
+    public void setup() {
+        AnimeProperties animeProperties = new AnimeProperties();
+        InMemoryAnimeRepository animeRepository = new InMemoryAnimeRepository(size);
+        AnimeSearchIndex animeSearchIndex = new AnimeSearchIndex(animeRepository, animeProperties);
+        animeSearchIndex.rebuild().block();
+        animeService = new AnimeService(animeRepository, animeProperties, new AnimeCache(animeProperties), animeSearchIndex,
+                new AnimeBatchLoader(animeRepository, animeProperties), new NoTransactionalOperator());
+        batch = IntStream.range(0, 100)
+                .mapToObj(i -> Anime.builder().name("Batch " + i).build())
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Anime findById() {
+        id = id % size + 1;
+        return animeService.findById(id).block();
+    }
+
+    //Autocomplete: one whole word and a prefix every name of the benchmark starts with
+    @Benchmark
+    public List<Anime> search() {
+        return animeService.search("anime 12", null).collectList().block();
+    }
+
+    @Benchmark
+    public List<Anime> findAll() {
+        return animeService.findAll().collectList().block();
+    }
+
+    @Benchmark
+    public List<Anime> saveAll() {
+        return animeService.saveAll(batch).collectList().block();
+    }
+}
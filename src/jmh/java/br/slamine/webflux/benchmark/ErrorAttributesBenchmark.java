@@ -0,0 +1,40 @@
+package br.slamine.webflux.benchmark;
+
+import br.slamine.webflux.exception.AnimeNotFoundException;
+import br.slamine.webflux.exception.CustomAttributes;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.web.error.ErrorAttributeOptions;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.server.ServerRequest;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the error body of a 404, the most common error of this API
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ErrorAttributesBenchmark {
+    private CustomAttributes customAttributes;
+    private ServerRequest request;
+
+    @Setup
+    public void setup() {
+        customAttributes = new CustomAttributes();
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/animes/42"));
+        customAttributes.storeErrorInformation(new AnimeNotFoundException(), exchange);
+        request = ServerRequest.create(exchange, ServerCodecConfigurer.create().getReaders());
+    }
+
+    @Benchmark
+    public Map<String, Object> getErrorAttributes() {
+        return customAttributes.getErrorAttributes(request, ErrorAttributeOptions.defaults());
+    }
+}
@@ -0,0 +1,169 @@
+package br.slamine.webflux.benchmark;
+
+import br.slamine.webflux.domain.Anime;
+import br.slamine.webflux.domain.AnimePageVersion;
+import br.slamine.webflux.repository.AnimeRepository;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AnimeRepository kept in memory, so the benchmarks measure the application code and not the database
+ */
+public class InMemoryAnimeRepository implements AnimeRepository {
+    private final ConcurrentNavigableMap<Integer, Anime> animes = new ConcurrentSkipListMap<>();
+    private final AtomicInteger ids = new AtomicInteger();
+
+    public InMemoryAnimeRepository(int size) {
+        for (int i = 0; i < size; i++) {
+            insert(Anime.builder().name("Anime " + i).build());
+        }
+    }
+
+    private Anime insert(Anime anime) {
+        Anime saved = anime.withId(ids.incrementAndGet()).withUpdatedAt(Instant.now()).withVersion(0L);
+        animes.put(saved.getId(), saved);
+        return saved;
+    }
+
+    @Override
+    public Mono<Anime> findById(int id) {
+        return Mono.justOrEmpty(animes.get(id));
+    }
+
+    @Override
+    public Flux<Anime> findPage(int after, int limit) {
+        return Flux.fromIterable(animes.tailMap(after, false).values()).take(limit);
+    }
+
+    @Override
+    public Mono<Anime> updateName(int id, String name, Instant updatedAt) {
+        return Mono.justOrEmpty(animes.computeIfPresent(id, (key, anime) -> update(anime, name, updatedAt)));
+    }
+
+    @Override
+    public Mono<Anime> updateNameIfVersion(int id, String name, Instant updatedAt, long version) {
+        return Mono.fromSupplier(() -> animes.computeIfPresent(id,
+                (key, anime) -> anime.getVersion() == version ? update(anime, name, updatedAt) : anime))
+                .filter(anime -> anime.getUpdatedAt() == updatedAt);//Only an anime updated by this call has this instance
+    }
+
+    private static Anime update(Anime anime, String name, Instant updatedAt) {
+        return anime.withName(name).withUpdatedAt(updatedAt).withVersion(anime.getVersion() + 1);
+    }
+
+    @Override
+    public Mono<AnimePageVersion> findPageVersion(int after, int limit) {
+        return findPage(after, limit)
+                .reduce(new AnimePageVersion(), (version, anime) -> new AnimePageVersion(version.getCount() + 1, anime.getId(),
+                        version.getLastModified() == null || anime.getUpdatedAt().isAfter(version.getLastModified())
+                                ? anime.getUpdatedAt() : version.getLastModified()));
+    }
+
+    @Override
+    public Mono<Integer> deleteAnime(int id) {
+        return Mono.fromSupplier(() -> animes.remove(id) == null ? 0 : 1);
+    }
+
+    @Override
+    public Flux<Anime> insertAll(Flux<Anime> animes, int chunkSize) {
+        return animes.map(this::insert);
+    }
+
+    @Override
+    public <S extends Anime> Mono<S> save(S entity) {
+        return Mono.fromSupplier(() -> {
+            if (entity.getId() == null) {
+                entity.setId(ids.incrementAndGet());
+            }
+            entity.setVersion(entity.getVersion() == null ? 0 : entity.getVersion() + 1);
+            animes.put(entity.getId(), entity);
+            return entity;
+        });
+    }
+
+    @Override
+    public <S extends Anime> Flux<S> saveAll(Iterable<S> entities) {
+        return Flux.fromIterable(entities).flatMap(this::save);
+    }
+
+    @Override
+    public <S extends Anime> Flux<S> saveAll(Publisher<S> entityStream) {
+        return Flux.from(entityStream).flatMap(this::save);
+    }
+
+    @Override
+    public Mono<Anime> findById(Integer id) {
+        return findById(id.intValue());
+    }
+
+    @Override
+    public Mono<Anime> findById(Publisher<Integer> id) {
+        return Mono.from(id).flatMap(this::findById);
+    }
+
+    @Override
+    public Mono<Boolean> existsById(Integer id) {
+        return Mono.fromSupplier(() -> animes.containsKey(id));
+    }
+
+    @Override
+    public Mono<Boolean> existsById(Publisher<Integer> id) {
+        return Mono.from(id).flatMap(this::existsById);
+    }
+
+    @Override
+    public Flux<Anime> findAll() {
+        return Flux.fromIterable(animes.values());
+    }
+
+    @Override
+    public Flux<Anime> findAllById(Iterable<Integer> ids) {
+        return Flux.fromIterable(ids).flatMap(this::findById);
+    }
+
+    @Override
+    public Flux<Anime> findAllById(Publisher<Integer> idStream) {
+        return Flux.from(idStream).flatMap(this::findById);
+    }
+
+    @Override
+    public Mono<Long> count() {
+        return Mono.fromSupplier(() -> (long) animes.size());
+    }
+
+    @Override
+    public Mono<Void> deleteById(Integer id) {
+        return Mono.fromRunnable(() -> animes.remove(id));
+    }
+
+    @Override
+    public Mono<Void> deleteById(Publisher<Integer> id) {
+        return Mono.from(id).flatMap(this::deleteById);
+    }
+
+    @Override
+    public Mono<Void> delete(Anime entity) {
+        return deleteById(entity.getId());
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Iterable<? extends Anime> entities) {
+        return Flux.fromIterable(entities).flatMap(this::delete).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Publisher<? extends Anime> entityStream) {
+        return Flux.from(entityStream).flatMap(this::delete).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll() {
+        return Mono.fromRunnable(animes::clear);
+    }
+}
@@ -0,0 +1,22 @@
+package br.slamine.webflux.benchmark;
+
+import org.springframework.transaction.reactive.TransactionCallback;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Runs everything as is, InMemoryAnimeRepository has no transactions
+ */
+public class NoTransactionalOperator implements TransactionalOperator {
+
+    @Override
+    public <T> Mono<T> transactional(Mono<T> mono) {
+        return mono;
+    }
+
+    @Override
+    public <T> Flux<T> execute(TransactionCallback<T> action) {
+        return Flux.from(action.doInTransaction(null));
+    }
+}
@@ -0,0 +1,42 @@
+package br.slamine.webflux.benchmark;
+
+import br.slamine.webflux.config.AuthProperties;
+import br.slamine.webflux.domain.MyUser;
+import br.slamine.webflux.security.SignedTokenService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SecurityBenchmark {
+    private UserDetails user;//As MyUserDetailsService caches it
+    private SignedTokenService signedTokenService;
+    private String token;
+
+    @Setup
+    public void setup() {
+        user = User.withUserDetails(new MyUser(1, "Slamine", "slamine", "{bcrypt}encoded", "ROLE_USER,ROLE_ADMIN")).build();
+        signedTokenService = new SignedTokenService(new AuthProperties());
+        token = signedTokenService.issue(user).getToken();
+    }
+
+    @Benchmark
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return user.getAuthorities();
+    }
+
+    @Benchmark
+    public Authentication verifyToken() {
+        return signedTokenService.verify(token);
+    }
+}
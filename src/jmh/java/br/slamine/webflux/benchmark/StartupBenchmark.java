@@ -0,0 +1,88 @@
+package br.slamine.webflux.benchmark;
+
+import br.slamine.webflux.SpringWebfluxEssentialsApplication;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import reactor.netty.http.client.HttpClient;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from SpringApplication.run to the first successful GET /animes/{id}, against an in-memory H2 database.
+ * Every measurement is a new JVM: compare the class data sharing archive (cds profile in pom.xml) with
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="StartupBenchmark -jvmArgsAppend -XX:SharedArchiveFile=target/cds/app.jsa"
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+    private static final String DATABASE = "startup;DB_CLOSE_DELAY=-1";
+    private static final String PASSWORD = "benchmark";
+
+    @Param({"default", "startup"})
+    private String profile;
+
+    private String authorization;
+    private ConfigurableApplicationContext context;
+
+    @Setup
+    public void setup() throws SQLException {
+        // The database lives as long as this JVM, the application opens it again through r2dbc
+        String password = PasswordEncoderFactories.createDelegatingPasswordEncoder().encode(PASSWORD);
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:" + DATABASE, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE anime (id INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(255) NOT NULL, "
+                    + "updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL, version BIGINT DEFAULT 0 NOT NULL)");
+            statement.execute("CREATE TABLE reactive_user (id INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(255) NOT NULL, "
+                    + "username VARCHAR(255) NOT NULL UNIQUE, password VARCHAR(255) NOT NULL, authorities VARCHAR(255) NOT NULL)");
+            statement.execute("INSERT INTO anime (name) SELECT CONCAT('Anime ', X) FROM SYSTEM_RANGE(1, 100)");
+            statement.execute("INSERT INTO reactive_user (name, username, password, authorities) "
+                    + "VALUES ('Benchmark', 'benchmark', '" + password + "', 'ROLE_USER')");
+        }
+        authorization = "Basic " + Base64.getEncoder()
+                .encodeToString(("benchmark:" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public int firstRequest() {
+        context = new SpringApplicationBuilder(SpringWebfluxEssentialsApplication.class)
+                .profiles(profile)
+                .run("--spring.r2dbc.url=r2dbc:h2:mem:///" + DATABASE,
+                        "--spring.r2dbc.username=sa",
+                        "--spring.r2dbc.password=",
+                        "--server.port=0",
+                        "--blockhound.mode=off",
+                        "--spring.devtools.restart.enabled=false");
+
+        int port = ((ReactiveWebServerApplicationContext) context).getWebServer().getPort();
+        Integer status = HttpClient.create()
+                .headers(headers -> headers.set("Authorization", authorization))
+                .get()
+                .uri("http://localhost:" + port + "/animes/1")
+                .responseSingle((response, body) -> body.then().thenReturn(response.status().code()))
+                .block();
+        if (status == null || status != 200) {
+            throw new IllegalStateException("GET /animes/1 answered " + status);
+        }
+        return status;
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+}
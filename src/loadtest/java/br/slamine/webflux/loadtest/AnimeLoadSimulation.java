@@ -0,0 +1,80 @@
+package br.slamine.webflux.loadtest;
+
+import io.r2dbc.spi.ConnectionFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.r2dbc.connectionfactory.init.ConnectionFactoryInitializer;
+import org.springframework.data.r2dbc.connectionfactory.init.ResourceDatabasePopulator;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Boots the whole application on an in-memory H2 database and sends it mixed GET/POST/batch traffic.
+ * Fails when an endpoint p99 or the error rate goes over the thresholds (loadtest.* properties)
+ */
+@Slf4j
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("loadtest")
+public class AnimeLoadSimulation {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private LoadTestProperties properties;
+
+    @TestConfiguration
+    @EnableConfigurationProperties(LoadTestProperties.class)
+    static class LoadTestDatabaseConfig {
+
+        @Bean
+        public ConnectionFactoryInitializer loadTestDatabaseInitializer(ConnectionFactory connectionFactory,
+                                                                        LoadTestProperties properties){
+            String password = PasswordEncoderFactories.createDelegatingPasswordEncoder().encode(properties.getPassword());
+            String seed = "INSERT INTO anime (name) SELECT CONCAT('Anime ', X) FROM SYSTEM_RANGE(1, " + properties.getAnimes() + ");\n"
+                    + "INSERT INTO reactive_user (name, username, password, authorities) "
+                    + "SELECT CONCAT('User ', X), CONCAT('user', X), '" + password + "', 'ROLE_USER,ROLE_ADMIN' "
+                    + "FROM SYSTEM_RANGE(1, " + properties.getUsers() + ");";
+
+            ConnectionFactoryInitializer initializer = new ConnectionFactoryInitializer();
+            initializer.setConnectionFactory(connectionFactory);
+            initializer.setDatabasePopulator(new ResourceDatabasePopulator(new ClassPathResource("schema-loadtest.sql"),
+                    new ByteArrayResource(seed.getBytes(StandardCharsets.UTF_8))));
+            return initializer;
+        }
+    }
+
+    @Test
+    @DisplayName("mixed traffic keeps every endpoint p99 and the error rate under the thresholds")
+    public void mixedTraffic_StaysUnderThresholds_WhenSentAtConfiguredRate(){
+        LoadDriver loadDriver = new LoadDriver(port, properties);
+        loadDriver.authenticate();
+
+        log.warn("Warm up: {}", loadDriver.run(properties.getWarmUp()));
+        LoadReport report = loadDriver.run(properties.getDuration());
+        log.warn("Load test: {}", report);
+
+        Assertions.assertTrue(report.getRequests() > 0, "No request was sent");
+        Assertions.assertTrue(report.getErrorRate() <= properties.getMaxErrorRate(),
+                () -> "Error rate over " + properties.getMaxErrorRate() + report);
+        long maxP99Micros = properties.getMaxP99().toNanos() / 1000;
+        report.getLatencies().forEach((endpoint, latencies) ->
+                Assertions.assertTrue(latencies.getValueAtPercentile(99) <= maxP99Micros,
+                        () -> endpoint + " p99 over " + properties.getMaxP99() + report));
+    }
+}
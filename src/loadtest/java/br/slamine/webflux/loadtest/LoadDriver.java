@@ -0,0 +1,137 @@
+package br.slamine.webflux.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.handler.codec.http.HttpMethod;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Open model load generator: requests are started at a fixed rate whatever the response times, and latency is
+ * measured from the moment a request was due, so time spent waiting for a free slot counts too
+ * (no coordinated omission). Each request is picked at random following the configured mix
+ */
+@Slf4j
+public class LoadDriver {
+    private static final long TICK_MILLIS = 10;
+
+    private final HttpClient httpClient;
+    private final LoadTestProperties properties;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<String> tokens;
+
+    public LoadDriver(int port, LoadTestProperties properties) {
+        this.properties = properties;
+        this.httpClient = HttpClient.create(ConnectionProvider.fixed("loadtest", properties.getConcurrency()))
+                .baseUrl("http://localhost:" + port);
+    }
+
+    /**
+     * Gets one token per seeded user: the password is checked once, then every request goes with a token
+     */
+    public void authenticate() {
+        tokens = Flux.range(1, properties.getUsers())
+                .concatMap(user -> httpClient
+                        .headers(headers -> headers.set(HttpHeaders.AUTHORIZATION, basic("user" + user, properties.getPassword())))
+                        .post()
+                        .uri("/auth/token")
+                        .responseSingle((response, content) -> content.asString())
+                        .map(this::token))
+                .collectList()
+                .block(Duration.ofMinutes(1));
+    }
+
+    public LoadReport run(Duration duration) {
+        LoadReport report = new LoadReport(duration);
+        long ticks = duration.toMillis() / TICK_MILLIS;
+        double requestsPerTick = properties.getRate() * TICK_MILLIS / 1000.0;
+        log.warn("Sending {} requests/s for {}", properties.getRate(), duration);
+
+        Flux.interval(Duration.ofMillis(TICK_MILLIS))
+                .take(ticks)
+                .concatMap(tick -> Flux.range(0, (int) ((tick + 1) * requestsPerTick) - (int) (tick * requestsPerTick)))
+                .map(request -> System.nanoTime())//When the request was due
+                .onBackpressureBuffer()
+                .flatMap(due -> send(report, due), properties.getConcurrency())
+                .then()
+                .block(duration.plusMinutes(1));
+        return report;
+    }
+
+    private Mono<Void> send(LoadReport report, long due) {
+        String token = tokens.get(ThreadLocalRandom.current().nextInt(tokens.size()));
+        HttpClient client = httpClient.headers(headers -> headers
+                .set(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .set(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                .set(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE));
+        LoadTestProperties.Mix mix = properties.getMix();
+        int pick = ThreadLocalRandom.current().nextInt(mix.getFindById() + mix.getFindAllById() + mix.getListPage() + mix.getSave() + mix.getSaveBatch());
+
+        if ((pick -= mix.getFindById()) < 0) {
+            int id = ThreadLocalRandom.current().nextInt(properties.getAnimes()) + 1;
+            return exchange(report, "GET /animes/{id}", due, client.get().uri("/animes/" + id));
+        }
+        if ((pick -= mix.getFindAllById()) < 0) {
+            String ids = ThreadLocalRandom.current().ints(properties.getBatchSize(), 1, properties.getAnimes() + 1)
+                    .mapToObj(String::valueOf)
+                    .collect(Collectors.joining(","));
+            return exchange(report, "GET /animes?ids=", due, client.get().uri("/animes?ids=" + ids));
+        }
+        if ((pick -= mix.getListPage()) < 0) {
+            int after = ThreadLocalRandom.current().nextInt(properties.getAnimes());
+            return exchange(report, "GET /animes", due, client.get().uri("/animes?after=" + after));
+        }
+        if (pick - mix.getSave() < 0) {
+            return exchange(report, "POST /animes", due, client.request(HttpMethod.POST).uri("/animes")
+                    .send(ByteBufFlux.fromString(Mono.just(animeJson()))));
+        }
+        String batch = IntStream.range(0, properties.getBatchSize())
+                .mapToObj(i -> animeJson())
+                .collect(Collectors.joining(",", "[", "]"));
+        return exchange(report, "POST /animes/batch", due, client.request(HttpMethod.POST).uri("/animes/batch")
+                .send(ByteBufFlux.fromString(Mono.just(batch))));
+    }
+
+    private Mono<Void> exchange(LoadReport report, String endpoint, long due, HttpClient.ResponseReceiver<?> request) {
+        return request.responseSingle((response, content) -> content.then(Mono.just(response.status().code())))
+                .doOnNext(status -> {
+                    if (status < 400) {
+                        report.recordSuccess(endpoint, System.nanoTime() - due);
+                    } else {
+                        report.recordError(endpoint);
+                    }
+                })
+                .doOnError(error -> report.recordError(endpoint))
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    private String animeJson() {
+        return "{\"name\":\"Load test anime " + ThreadLocalRandom.current().nextInt(1_000_000) + "\"}";
+    }
+
+    private String token(String json) {
+        try {
+            return objectMapper.readTree(json).get("token").asText();
+        } catch (Exception e) {
+            throw new IllegalStateException("Unexpected token response: " + json, e);
+        }
+    }
+
+    private static String basic(String username, String password) {
+        return "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+}
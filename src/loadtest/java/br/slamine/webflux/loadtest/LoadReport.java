@@ -0,0 +1,83 @@
+package br.slamine.webflux.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram (microseconds, 3 significant digits) and error count of each endpoint during one run
+ */
+public class LoadReport {
+    private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final Duration duration;
+
+    public LoadReport(Duration duration) {
+        this.duration = duration;
+    }
+
+    public void recordSuccess(String endpoint, long nanos) {
+        endpoint(endpoint).latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void recordError(String endpoint) {
+        endpoint(endpoint).errors.increment();
+    }
+
+    private Endpoint endpoint(String endpoint) {
+        return endpoints.computeIfAbsent(endpoint, key -> new Endpoint());
+    }
+
+    public Map<String, Histogram> getLatencies() {
+        Map<String, Histogram> latencies = new TreeMap<>();
+        endpoints.forEach((name, endpoint) -> latencies.put(name, endpoint.latencies));
+        return latencies;
+    }
+
+    public long getRequests() {
+        return endpoints.values().stream().mapToLong(Endpoint::requests).sum();
+    }
+
+    public long getErrors() {
+        return endpoints.values().stream().mapToLong(endpoint -> endpoint.errors.sum()).sum();
+    }
+
+    public double getErrorRate() {
+        long requests = getRequests();
+        return requests == 0 ? 0 : (double) getErrors() / requests;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder(String.format("%n%-22s %9s %9s %8s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "req/s", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+        new TreeMap<>(endpoints).forEach((name, endpoint) -> {
+            Histogram latencies = endpoint.latencies;
+            report.append(String.format("%-22s %9d %9.1f %8d %9.2f %9.2f %9.2f %9.2f%n", name, endpoint.requests(),
+                    endpoint.requests() / (duration.toMillis() / 1000.0), endpoint.errors.sum(),
+                    millis(latencies.getValueAtPercentile(50)), millis(latencies.getValueAtPercentile(99)),
+                    millis(latencies.getValueAtPercentile(99.9)), millis(latencies.getMaxValue())));
+        });
+        return report.append(String.format("total: %d requests, %.1f req/s, %.3f%% errors",
+                getRequests(), getRequests() / (duration.toMillis() / 1000.0), getErrorRate() * 100)).toString();
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static final class Endpoint {
+        private final Histogram latencies = new ConcurrentHistogram(3);//Auto resizing
+        private final LongAdder errors = new LongAdder();
+
+        private long requests() {
+            return latencies.getTotalCount() + errors.sum();
+        }
+    }
+}
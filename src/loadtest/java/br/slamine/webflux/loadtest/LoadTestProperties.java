@@ -0,0 +1,34 @@
+package br.slamine.webflux.loadtest;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "loadtest")
+public class LoadTestProperties {
+    private int animes = 10_000;//Seeded before the run
+    private int users = 10;//Seeded before the run, the traffic is spread over their tokens
+    private String password = "loadtest";
+    private int rate = 100;//Requests started per second, whether the previous ones completed or not
+    private Duration warmUp = Duration.ofSeconds(10);//Same traffic before the measurement, not recorded
+    private Duration duration = Duration.ofSeconds(30);
+    private int concurrency = 256;//Max requests in flight, the ones beyond wait and their wait is measured
+    private int batchSize = 50;//Animes per POST /animes/batch, ids per GET /animes?ids=
+    private Mix mix = new Mix();
+    private Duration maxP99 = Duration.ofMillis(250);//For every endpoint
+    private double maxErrorRate = 0.001;
+
+    /**
+     * Relative weight of each kind of request in the traffic
+     */
+    @Data
+    public static class Mix {
+        private int findById = 65;
+        private int findAllById = 5;
+        private int listPage = 10;
+        private int save = 15;
+        private int saveBatch = 5;
+    }
+}
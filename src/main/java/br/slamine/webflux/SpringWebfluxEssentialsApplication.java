@@ -1,24 +1,30 @@
 package br.slamine.webflux;
 
+import br.slamine.webflux.config.AnimeProperties;
+import br.slamine.webflux.config.AuthProperties;
+import br.slamine.webflux.config.BlockHoundProperties;
+import br.slamine.webflux.config.ConcurrencyLimitProperties;
+import br.slamine.webflux.config.DatabaseProperties;
+import br.slamine.webflux.config.RateLimitProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.security.crypto.factory.PasswordEncoderFactories;
-import reactor.blockhound.BlockHound;
+import reactor.core.scheduler.Schedulers;
 
 @SpringBootApplication
+@EnableConfigurationProperties({AnimeProperties.class, AuthProperties.class, BlockHoundProperties.class, ConcurrencyLimitProperties.class,
+        DatabaseProperties.class, RateLimitProperties.class})
 public class SpringWebfluxEssentialsApplication {
 
-	static {
-		BlockHound.install(builder ->
-				builder.allowBlockingCallsInside("java.util.UUID", "randomUUID"));
-	}
-
 	public static void main(String[] args) {
 		System.out.println(
 				PasswordEncoderFactories
 						.createDelegatingPasswordEncoder()
 						.encode("slamine")
 		);
+		//Before any scheduler is created: only the ones created afterwards report metrics
+		Schedulers.enableMetrics();
 		SpringApplication.run(SpringWebfluxEssentialsApplication.class, args);
 	}
 
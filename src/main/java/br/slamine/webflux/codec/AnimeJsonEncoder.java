@@ -0,0 +1,329 @@
+package br.slamine.webflux.codec;
+
+import br.slamine.webflux.domain.Anime;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.HttpMessageEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes animes as JSON field by field straight into the response buffer: no serializer lookup, no reflection,
+ * no intermediate String or byte[]. The output is the one of the application ObjectMapper (properties in declaration
+ * order, updatedAt and version left out when null, ISO-8601 instants), AnimeJsonEncoderTest compares both.
+ * A Flux is one JSON array in a single buffer, or one document per line for the streaming media types.
+ * Registered in WebFluxCodecConfig ahead of Jackson, which still writes every other type
+ */
+@Component
+public class AnimeJsonEncoder implements HttpMessageEncoder<Anime> {
+    private static final List<MimeType> MIME_TYPES = List.of(
+            MediaType.APPLICATION_JSON, CodecMediaTypes.APPLICATION_NDJSON, MediaType.APPLICATION_STREAM_JSON);
+    private static final List<MediaType> STREAMING_MEDIA_TYPES = List.of(
+            CodecMediaTypes.APPLICATION_NDJSON, MediaType.APPLICATION_STREAM_JSON);
+
+    private static final byte[] ID = bytes("{\"id\":");
+    private static final byte[] NAME = bytes(",\"name\":");
+    private static final byte[] UPDATED_AT = bytes(",\"updatedAt\":");
+    private static final byte[] VERSION = bytes(",\"version\":");
+    private static final byte[] NULL = bytes("null");
+    private static final byte[] HEX = bytes("0123456789ABCDEF");
+    private static final int SIZE_ESTIMATE = 96;//Bytes of an anime besides its name
+
+    //Characters Jackson escapes: 'u' as backslash, u and 4 hex digits, any other value as a backslash followed by it
+    private static final byte[] ESCAPES = new byte[128];
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = 'u';
+        }
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\t'] = 't';
+        ESCAPES['\f'] = 'f';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\r'] = 'r';
+    }
+
+    @Override
+    public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+        if (elementType.resolve() != Anime.class) {
+            return false;
+        }
+        if (mimeType == null) {
+            return true;
+        }
+        Charset charset = mimeType.getCharset();
+        if (charset != null && !StandardCharsets.UTF_8.equals(charset)) {
+            return false;
+        }
+        for (MimeType supported : MIME_TYPES) {
+            if (supported.isCompatibleWith(mimeType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<? extends Anime> inputStream, DataBufferFactory bufferFactory,
+                                   ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+        if (inputStream instanceof Mono) {
+            return Mono.from(inputStream)
+                    .map(anime -> encodeValue(anime, bufferFactory, elementType, mimeType, hints))
+                    .flux();
+        }
+        if (isStreaming(mimeType)) {
+            return Flux.from(inputStream).map(anime -> {
+                DataBuffer buffer = bufferFactory.allocateBuffer(sizeOf(anime));
+                try {
+                    write(anime, buffer);
+                    return buffer.write((byte) '\n');
+                } catch (RuntimeException e) {
+                    DataBufferUtils.release(buffer);
+                    throw e;
+                }
+            });
+        }
+        //The animes are collected (not their JSON) so the whole array is written in one buffer, with a Content-Length
+        return Flux.from(inputStream)
+                .collectList()
+                .map(animes -> encodeArray(animes, bufferFactory))
+                .flux();
+    }
+
+    @Override
+    public DataBuffer encodeValue(Anime anime, DataBufferFactory bufferFactory, ResolvableType valueType,
+                                  MimeType mimeType, Map<String, Object> hints) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(sizeOf(anime));
+        try {
+            write(anime, buffer);
+            return buffer;
+        } catch (RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            throw e;
+        }
+    }
+
+    private DataBuffer encodeArray(List<? extends Anime> animes, DataBufferFactory bufferFactory) {
+        int size = 2;
+        for (Anime anime : animes) {
+            size += sizeOf(anime) + 1;
+        }
+        DataBuffer buffer = bufferFactory.allocateBuffer(size);
+        try {
+            buffer.write((byte) '[');
+            for (int i = 0; i < animes.size(); i++) {
+                if (i > 0) {
+                    buffer.write((byte) ',');
+                }
+                write(animes.get(i), buffer);
+            }
+            return buffer.write((byte) ']');
+        } catch (RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            throw e;
+        }
+    }
+
+    /**
+     * Appends the JSON object of the anime to the buffer, without separator
+     */
+    public void write(Anime anime, DataBuffer buffer) {
+        buffer.write(ID);
+        if (anime.getId() == null) {
+            buffer.write(NULL);
+        } else {
+            writeNumber(buffer, anime.getId());
+        }
+        buffer.write(NAME);
+        if (anime.getName() == null) {
+            buffer.write(NULL);
+        } else {
+            writeString(buffer, anime.getName());
+        }
+        if (anime.getUpdatedAt() != null) {
+            buffer.write(UPDATED_AT);
+            writeInstant(buffer, anime.getUpdatedAt());
+        }
+        if (anime.getVersion() != null) {
+            buffer.write(VERSION);
+            writeNumber(buffer, anime.getVersion());
+        }
+        buffer.write((byte) '}');
+    }
+
+    @Override
+    public List<MimeType> getEncodableMimeTypes() {
+        return MIME_TYPES;
+    }
+
+    @Override
+    public List<MediaType> getStreamingMediaTypes() {
+        return STREAMING_MEDIA_TYPES;
+    }
+
+    private static boolean isStreaming(MimeType mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+        for (MediaType streaming : STREAMING_MEDIA_TYPES) {
+            if (streaming.isCompatibleWith(mimeType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int sizeOf(Anime anime) {
+        return SIZE_ESTIMATE + (anime.getName() == null ? 0 : anime.getName().length() * 3);
+    }
+
+    private static void writeString(DataBuffer buffer, String value) {
+        buffer.write((byte) '"');
+        if (needsEscaping(value)) {
+            writeEscaped(buffer, value);
+        } else {
+            buffer.write(value, StandardCharsets.UTF_8);//Netty encodes it in place
+        }
+        buffer.write((byte) '"');
+    }
+
+    private static boolean needsEscaping(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c < 128 && ESCAPES[c] != 0) || Character.isSurrogate(c)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void writeEscaped(DataBuffer buffer, String value) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 128) {
+                byte escape = ESCAPES[c];
+                if (escape == 0) {
+                    buffer.write((byte) c);
+                } else if (escape == 'u') {
+                    buffer.write((byte) '\\').write((byte) 'u').write((byte) '0').write((byte) '0')
+                            .write(HEX[c >> 4]).write(HEX[c & 0xF]);
+                } else {
+                    buffer.write((byte) '\\').write(escape);
+                }
+            } else if (c < 0x800) {
+                buffer.write((byte) (0xC0 | (c >> 6))).write((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.write((byte) (0xF0 | (codePoint >> 18)))
+                        .write((byte) (0x80 | ((codePoint >> 12) & 0x3F)))
+                        .write((byte) (0x80 | ((codePoint >> 6) & 0x3F)))
+                        .write((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                buffer.write((byte) '?');//Unpaired, like Netty's UTF-8 encoder
+            } else {
+                buffer.write((byte) (0xE0 | (c >> 12)))
+                        .write((byte) (0x80 | ((c >> 6) & 0x3F)))
+                        .write((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private static void writeNumber(DataBuffer buffer, long value) {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                buffer.write(Long.toString(value), StandardCharsets.US_ASCII);
+                return;
+            }
+            buffer.write((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.write((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    /**
+     * DateTimeFormatter.ISO_INSTANT, what Jackson writes: 2020-07-01T10:15:30.123456Z, the fraction by groups of 3 digits
+     */
+    private static void writeInstant(DataBuffer buffer, Instant instant) {
+        long seconds = instant.getEpochSecond();
+        long days = Math.floorDiv(seconds, 86_400);
+        int secondOfDay = (int) Math.floorMod(seconds, 86_400);
+
+        //Civil date of an epoch day (Howard Hinnant's days_from_civil, reversed)
+        long shifted = days + 719_468;
+        long era = Math.floorDiv(shifted, 146_097);
+        long dayOfEra = shifted - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1_460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 0 || year > 9_999) {
+            buffer.write((byte) '"');
+            buffer.write(DateTimeFormatter.ISO_INSTANT.format(instant), StandardCharsets.US_ASCII);
+            buffer.write((byte) '"');
+            return;
+        }
+
+        buffer.write((byte) '"');
+        writeDigits(buffer, year, 4);
+        buffer.write((byte) '-');
+        writeDigits(buffer, month, 2);
+        buffer.write((byte) '-');
+        writeDigits(buffer, day, 2);
+        buffer.write((byte) 'T');
+        writeDigits(buffer, secondOfDay / 3_600, 2);
+        buffer.write((byte) ':');
+        writeDigits(buffer, secondOfDay / 60 % 60, 2);
+        buffer.write((byte) ':');
+        writeDigits(buffer, secondOfDay % 60, 2);
+        int nano = instant.getNano();
+        if (nano != 0) {
+            buffer.write((byte) '.');
+            if (nano % 1_000_000 == 0) {
+                writeDigits(buffer, nano / 1_000_000, 3);
+            } else if (nano % 1_000 == 0) {
+                writeDigits(buffer, nano / 1_000, 6);
+            } else {
+                writeDigits(buffer, nano, 9);
+            }
+        }
+        buffer.write((byte) 'Z').write((byte) '"');
+    }
+
+    private static void writeDigits(DataBuffer buffer, long value, int digits) {
+        long divisor = 1;
+        for (int i = 1; i < digits; i++) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.write((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
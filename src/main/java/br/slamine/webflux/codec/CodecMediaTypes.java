@@ -0,0 +1,14 @@
+package br.slamine.webflux.codec;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Media types written by the anime codecs that Spring 5.2's MediaType doesn't declare yet
+ */
+public final class CodecMediaTypes {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(APPLICATION_NDJSON_VALUE);
+
+    private CodecMediaTypes() {
+    }
+}
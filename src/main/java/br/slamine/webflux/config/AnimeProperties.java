@@ -0,0 +1,56 @@
+package br.slamine.webflux.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "anime")
+public class AnimeProperties {
+    private Page page = new Page();
+    private Stream stream = new Stream();
+    private Cache cache = new Cache();
+    private Batch batch = new Batch();
+    private Search search = new Search();
+    private Lookup lookup = new Lookup();
+
+    @Data
+    public static class Page {
+        private int defaultSize = 20;
+        private int maxSize = 100;//Server-side cap, whatever the client asks for in "limit"
+    }
+
+    @Data
+    public static class Stream {
+        private int flushSize = 1;//Animes written between two flushes of the NDJSON/SSE response
+        private int fetchSize = 256;//Max rows requested from the database cursor at once
+    }
+
+    @Data
+    public static class Cache {
+        private long maximumSize = 10_000;
+        private Duration timeToLive = Duration.ofMinutes(10);
+        private long missingMaximumSize = 10_000;
+        private Duration missingTimeToLive = Duration.ofSeconds(30);//Short: ids may be created by other nodes
+    }
+
+    @Data
+    public static class Batch {
+        private int chunkSize = 500;//Rows per multi-row INSERT
+    }
+
+    @Data
+    public static class Search {
+        private int defaultLimit = 10;
+        private int maxLimit = 50;
+        private Duration rebuildInterval = Duration.ofMinutes(10);//Picks up other nodes' writes, 0 builds only at startup
+    }
+
+    @Data
+    public static class Lookup {
+        private Duration window = Duration.ofMillis(2);//Latency added to cache misses in exchange for batching, 0 disables it
+        private int maxBatchSize = 100;//Ids per SELECT ... WHERE id IN (...), the batch is sent as soon as it is full
+        private int maxIds = 100;//Ids accepted by one GET /animes?ids=
+    }
+}
@@ -0,0 +1,39 @@
+package br.slamine.webflux.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "auth")
+public class AuthProperties {
+    private CredentialsCache credentialsCache = new CredentialsCache();
+    private PasswordEncoder passwordEncoder = new PasswordEncoder();
+    private UserCache userCache = new UserCache();
+    private Token token = new Token();
+
+    @Data
+    public static class CredentialsCache {
+        private long maximumSize = 10_000;
+        private Duration timeToLive = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class PasswordEncoder {
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int queueSize = 1_000;//Password checks waiting for a thread, beyond that they are rejected
+    }
+
+    @Data
+    public static class UserCache {
+        private long maximumSize = 10_000;
+        private Duration timeToLive = Duration.ofMinutes(1);//Changes made directly in the database are seen after this delay
+    }
+
+    @Data
+    public static class Token {
+        private String secret;//Base64 HMAC key shared by every node, a random one is generated when missing
+        private Duration timeToLive = Duration.ofMinutes(15);
+    }
+}
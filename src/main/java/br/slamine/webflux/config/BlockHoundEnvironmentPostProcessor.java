@@ -0,0 +1,44 @@
+package br.slamine.webflux.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.ConfigurableEnvironment;
+import reactor.blockhound.BlockHound;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Installs BlockHound as configured by blockhound.mode. It has to happen once application.yml is read
+ * but before any non-blocking thread starts, hence an EnvironmentPostProcessor (see META-INF/spring.factories)
+ */
+public class BlockHoundEnvironmentPostProcessor implements EnvironmentPostProcessor, Ordered {
+    private static final AtomicBoolean INSTALLED = new AtomicBoolean();
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        BlockHoundProperties properties = Binder.get(environment)
+                .bind("blockhound", BlockHoundProperties.class)
+                .orElseGet(BlockHoundProperties::new);
+        //Instrumentation can't be undone: once per JVM, whatever the number of contexts (tests, devtools restarts)
+        if(properties.getMode() == BlockHoundProperties.Mode.OFF || !INSTALLED.compareAndSet(false, true)){
+            return;
+        }
+
+        BlockingCallReporter reporter = properties.getMode() == BlockHoundProperties.Mode.REPORT
+                ? new BlockingCallReporter(properties.getMaxLogsPerMinute())
+                : null;
+        BlockHound.install(builder -> {
+            builder.allowBlockingCallsInside("java.util.UUID", "randomUUID");
+            if(reporter != null){
+                builder.blockingMethodCallback(reporter::report);
+            }
+        });
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;//After application.yml is loaded
+    }
+}
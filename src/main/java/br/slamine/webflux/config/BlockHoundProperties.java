@@ -0,0 +1,20 @@
+package br.slamine.webflux.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Read before the application context exists, by BlockHoundEnvironmentPostProcessor
+ */
+@Data
+@ConfigurationProperties(prefix = "blockhound")
+public class BlockHoundProperties {
+    private Mode mode = Mode.OFF;
+    private int maxLogsPerMinute = 10;//Report mode: stack traces logged beyond that are only counted
+
+    public enum Mode {
+        OFF,//Not installed, no instrumentation at all
+        STRICT,//Blocking calls on non-blocking threads throw BlockingOperationError
+        REPORT//Blocking calls are counted and sampled to the log, requests are not failed
+    }
+}
@@ -0,0 +1,77 @@
+package br.slamine.webflux.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import reactor.blockhound.BlockingMethod;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BlockHound callback of the report mode. Runs on the offending (event loop) thread, so it must be cheap and
+ * never block: every call increments the blockhound.blocking.calls counter of the global Micrometer registry
+ * (which Spring Boot's registry joins), and at most maxLogsPerMinute stack traces are handed to a background
+ * thread to be logged. With maxLogsPerMinute 0 calls are only counted and no thread is started
+ */
+@Slf4j
+class BlockingCallReporter {
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final int maxLogsPerMinute;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final AtomicInteger logsInWindow = new AtomicInteger();
+    private final ExecutorService logger;//Null when nothing is logged
+
+    BlockingCallReporter(int maxLogsPerMinute) {
+        if (maxLogsPerMinute < 0) {
+            throw new IllegalArgumentException("blockhound.max-logs-per-minute must not be negative: " + maxLogsPerMinute);
+        }
+        this.maxLogsPerMinute = maxLogsPerMinute;
+        if (maxLogsPerMinute == 0) {
+            this.logger = null;
+            return;
+        }
+        //Bounded queue discarding what doesn't fit: logging must never hold the offending thread
+        this.logger = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(maxLogsPerMinute),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "blockhound-reporter");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    void report(BlockingMethod method) {
+        String name = method.getClassName() + "." + method.getName();
+        counters.computeIfAbsent(name, key -> Counter.builder("blockhound.blocking.calls")
+                .description("Blocking calls detected on non-blocking threads")
+                .tag("method", key)
+                .register(Metrics.globalRegistry))
+                .increment();
+
+        if (shouldLog()) {
+            String threadName = Thread.currentThread().getName();
+            Throwable stackTrace = new Throwable("Blocking call to " + name + " on thread " + threadName);
+            logger.execute(() -> log.warn("Blocking call detected", stackTrace));
+        }
+    }
+
+    private boolean shouldLog() {
+        if (logger == null) {
+            return false;
+        }
+        long now = System.nanoTime();
+        long start = windowStart.get();
+        if (now - start >= MINUTE_NANOS && windowStart.compareAndSet(start, now)) {
+            logsInWindow.set(0);
+        }
+        return logsInWindow.incrementAndGet() <= maxLogsPerMinute;
+    }
+}
@@ -0,0 +1,30 @@
+package br.slamine.webflux.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "concurrency-limit")
+public class ConcurrencyLimitProperties {
+    private boolean enabled = true;
+    private List<Group> groups = new ArrayList<>();//The first matching group applies, requests matching none are not limited
+
+    @Data
+    public static class Group {
+        private String name;
+        private List<String> paths = List.of("/**");
+        private List<HttpMethod> methods = new ArrayList<>();//Any method when empty
+        private List<MediaType> accepts = new ArrayList<>();//Requests accepting one of them explicitly, any request when empty
+        private int initialLimit = 100;
+        private int minLimit = 10;
+        private int maxLimit = 1_000;
+        private Duration latencyThreshold = Duration.ofMillis(100);//Slower responses shrink the limit, at most once per threshold
+        private double backoffRatio = 0.9;
+    }
+}
@@ -0,0 +1,57 @@
+package br.slamine.webflux.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+/**
+ * Replaces the pool Spring Boot would create from spring.r2dbc.pool.* by one that also bounds the time and
+ * the number of requests waiting for a connection: when the database is saturated requests fail fast with 503
+ * (see CustomAttributes) instead of queueing and piling up latency.
+ * Spring Boot Actuator publishes its r2dbc.pool.* gauges (acquired, idle, pending...)
+ */
+@Slf4j
+@Configuration
+public class DatabaseConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool connectionFactory(R2dbcProperties r2dbcProperties, DatabaseProperties databaseProperties){
+        DatabaseProperties.Pool pool = databaseProperties.getPool();
+        ConnectionPoolConfiguration configuration = ConnectionPoolConfiguration.builder(connectionFactory(r2dbcProperties))
+                .name("anime")
+                .initialSize(pool.getInitialSize())
+                .maxSize(pool.getMaxSize())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .maxLifeTime(pool.getMaxLifeTime())
+                .maxCreateConnectionTime(pool.getMaxCreateConnectionTime())
+                .maxAcquireTime(pool.getMaxAcquireTime())
+                .validationQuery(pool.getValidationQuery())
+                .customizer(builder -> builder.maxPendingAcquire(pool.getMaxPendingAcquire()))
+                .build();
+        ConnectionPool connectionPool = new ConnectionPool(configuration);
+
+        //Opens the initial connections in background: a database down at startup must not prevent the application from starting
+        connectionPool.warmup()
+                .subscribe(warmed -> log.info("Connection pool warmed up with {} connections", warmed),
+                        error -> log.warn("Connection pool warm up failed, connections will be opened on demand", error));
+        return connectionPool;
+    }
+
+    private ConnectionFactory connectionFactory(R2dbcProperties r2dbcProperties){
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(r2dbcProperties.getUrl()).mutate();
+        if(StringUtils.hasText(r2dbcProperties.getUsername())){
+            options.option(ConnectionFactoryOptions.USER, r2dbcProperties.getUsername());
+        }
+        if(StringUtils.hasText(r2dbcProperties.getPassword())){
+            options.option(ConnectionFactoryOptions.PASSWORD, r2dbcProperties.getPassword());
+        }
+        return ConnectionFactories.get(options.build());
+    }
+}
@@ -0,0 +1,24 @@
+package br.slamine.webflux.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "database")
+public class DatabaseProperties {
+    private Pool pool = new Pool();
+
+    @Data
+    public static class Pool {
+        private int initialSize = 10;//Connections opened at startup, before the first request needs them
+        private int maxSize = 20;
+        private Duration maxIdleTime = Duration.ofMinutes(30);
+        private Duration maxLifeTime = Duration.ofHours(1);
+        private Duration maxCreateConnectionTime = Duration.ofSeconds(5);
+        private Duration maxAcquireTime = Duration.ofSeconds(2);//Time a request may wait for a connection before failing with 503
+        private int maxPendingAcquire = 200;//Requests allowed to wait for a connection, beyond that they fail with 503 at once
+        private String validationQuery = "SELECT 1";
+    }
+}
@@ -0,0 +1,61 @@
+package br.slamine.webflux.config;
+
+import br.slamine.webflux.metrics.ReactiveTimingBeanPostProcessor;
+import br.slamine.webflux.repository.AnimeRepository;
+import br.slamine.webflux.repository.MyUserRepository;
+import br.slamine.webflux.service.AnimeImportService;
+import br.slamine.webflux.service.AnimeService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorResourceFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Besides what Spring Boot Actuator records (http.server.requests per route and status, JVM, r2dbc.pool.*):
+ * service and repository timers, and the backlog of the Netty event loops.
+ * Reactor schedulers are instrumented by Schedulers.enableMetrics() at startup
+ */
+@Configuration
+public class MetricsConfig {
+    public static final String SERVICE_METRIC = "service.invocations";
+    public static final String REPOSITORY_METRIC = "repository.invocations";
+
+    //static: a BeanPostProcessor must be created before the other beans, without instantiating this configuration
+    @Bean
+    public static ReactiveTimingBeanPostProcessor reactiveTimingBeanPostProcessor(ObjectProvider<MeterRegistry> meterRegistry){
+        Map<Class<?>, String> metricNameByType = new LinkedHashMap<>();
+        metricNameByType.put(AnimeService.class, SERVICE_METRIC);
+        metricNameByType.put(AnimeImportService.class, SERVICE_METRIC);
+        metricNameByType.put(AnimeRepository.class, REPOSITORY_METRIC);
+        metricNameByType.put(MyUserRepository.class, REPOSITORY_METRIC);
+        return new ReactiveTimingBeanPostProcessor(meterRegistry, metricNameByType);
+    }
+
+    /**
+     * Tasks queued on each event loop: a growing backlog means the loops are saturated
+     * (or something blocks them) and every request on them waits
+     */
+    @Bean
+    public MeterBinder nettyEventLoopMetrics(ReactorResourceFactory reactorResourceFactory){
+        return registry -> {
+            int index = 0;
+            for (EventExecutor executor : reactorResourceFactory.getLoopResources().onServer(true)) {
+                if (executor instanceof SingleThreadEventExecutor) {
+                    Gauge.builder("netty.eventloop.pending.tasks", (SingleThreadEventExecutor) executor,
+                            SingleThreadEventExecutor::pendingTasks)
+                            .tag("eventloop", String.valueOf(index++))
+                            .description("Tasks waiting to run on the event loop")
+                            .register(registry);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,37 @@
+package br.slamine.webflux.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.http.HttpMethod;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+    private boolean enabled = true;
+    private long maximumBuckets = 100_000;//Least recently used buckets are dropped beyond that, bounding the memory
+    private Duration idleTimeout = Duration.ofMinutes(10);//Buckets unused for that long are dropped, they would be full again anyway
+    private List<Rule> rules = new ArrayList<>();//The first matching rule applies, requests matching none are not limited
+    private PasswordAttempts passwordAttempts = new PasswordAttempts();
+
+    @Data
+    public static class Rule {
+        private String path = "/**";
+        private HttpMethod method;//Any method when missing
+        private String role;//USER, ADMIN... Anonymous requests (limited per IP) only match rules without role
+        private double permitsPerSecond;
+        private int burst = 1;//Requests accepted at once after being idle
+    }
+
+    /**
+     * Requests carrying a password (HTTP Basic, form login), per IP and before the password is checked
+     */
+    @Data
+    public static class PasswordAttempts {
+        private double permitsPerSecond = 10;
+        private int burst = 50;
+    }
+}
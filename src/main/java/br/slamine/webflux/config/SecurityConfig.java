@@ -1,5 +1,11 @@
 package br.slamine.webflux.config;
 
+import br.slamine.webflux.security.BearerTokenAuthenticationConverter;
+import br.slamine.webflux.security.CachingReactiveAuthenticationManager;
+import br.slamine.webflux.security.PasswordAttemptWebFilter;
+import br.slamine.webflux.security.RateLimitWebFilter;
+import br.slamine.webflux.security.RateLimiter;
+import br.slamine.webflux.security.SignedTokenService;
 import br.slamine.webflux.service.MyUserDetailsService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.http.HttpMethod;
@@ -7,22 +13,33 @@ import org.springframework.security.authentication.ReactiveAuthenticationManager
 import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
 import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.AuthenticationWebFilter;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 @EnableWebFluxSecurity
 @EnableReactiveMethodSecurity
 public class SecurityConfig {
     @Bean
-    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http){
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http, SignedTokenService signedTokenService,
+                                                         RateLimiter rateLimiter){
         //@formatter:off
         return http
                 .csrf().disable()
+                .addFilterAt(signedTokenAuthenticationFilter(signedTokenService), SecurityWebFiltersOrder.AUTHENTICATION)
+                .addFilterBefore(new PasswordAttemptWebFilter(rateLimiter), SecurityWebFiltersOrder.HTTP_BASIC)
+                .addFilterAfter(new RateLimitWebFilter(rateLimiter), SecurityWebFiltersOrder.AUTHENTICATION)
                 .authorizeExchange()
                     .pathMatchers(HttpMethod.POST, "/animes/**").hasRole("ADMIN")
                     .pathMatchers(HttpMethod.PUT, "/animes/**").hasRole("ADMIN")
                     .pathMatchers(HttpMethod.DELETE, "/animes/**").hasRole("ADMIN")
                     .pathMatchers(HttpMethod.GET, "/animes/**").hasRole("USER")
+                    .pathMatchers("/actuator/health").permitAll()
+                    .pathMatchers("/actuator/**").hasRole("ADMIN")
                 .anyExchange().authenticated()
                 .and()
                     .formLogin()
@@ -33,9 +50,43 @@ public class SecurityConfig {
         //@formatter:on
     }
 
+    /**
+     * Authenticates {@code Authorization: Bearer} requests with the tokens issued by POST /auth/token.
+     * Only the signature is checked, in memory: no user lookup, no bcrypt and no session
+     */
+    private AuthenticationWebFilter signedTokenAuthenticationFilter(SignedTokenService signedTokenService){
+        AuthenticationWebFilter filter = new AuthenticationWebFilter((ReactiveAuthenticationManager) authentication ->
+                Mono.fromCallable(() -> signedTokenService.verify(authentication.getCredentials().toString())));
+        filter.setServerAuthenticationConverter(new BearerTokenAuthenticationConverter());
+        return filter;
+    }
+
+    /**
+     * Not a WebFilter bean: those are added to the application filters too, where the caller isn't known yet
+     */
     @Bean
-    public ReactiveAuthenticationManager authenticationManager(MyUserDetailsService userDetailsService){
-        return new UserDetailsRepositoryReactiveAuthenticationManager(userDetailsService);
+    public RateLimiter rateLimiter(RateLimitProperties rateLimitProperties){
+        return new RateLimiter(rateLimitProperties);
+    }
+
+    @Bean
+    public ReactiveAuthenticationManager authenticationManager(MyUserDetailsService userDetailsService,
+                                                               Scheduler passwordEncoderScheduler,
+                                                               AuthProperties authProperties){
+        UserDetailsRepositoryReactiveAuthenticationManager passwordAuthenticationManager =
+                new UserDetailsRepositoryReactiveAuthenticationManager(userDetailsService);
+        passwordAuthenticationManager.setScheduler(passwordEncoderScheduler);
+        return new CachingReactiveAuthenticationManager(passwordAuthenticationManager, userDetailsService,
+                authProperties.getCredentialsCache());
+    }
+
+    /**
+     * bcrypt takes tens of milliseconds of CPU, so it runs on its own bounded pool instead of the event loop
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler passwordEncoderScheduler(AuthProperties authProperties){
+        AuthProperties.PasswordEncoder passwordEncoder = authProperties.getPasswordEncoder();
+        return Schedulers.newBoundedElastic(passwordEncoder.getThreads(), passwordEncoder.getQueueSize(), "password-encoder");
     }
 
 //    @Bean
@@ -0,0 +1,42 @@
+package br.slamine.webflux.config;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.WebFilterChainProxy;
+
+/**
+ * Supports the startup profile (application-startup.yml), which creates beans on first use to start faster
+ */
+@Configuration
+public class StartupConfig {
+
+    /**
+     * Stay eager even in lazy mode: the security chain must be complete before the first request is accepted,
+     * and creating the connection pool starts opening connections (see DatabaseConfig)
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter eagerSecurityAndDatabase(){
+        return LazyInitializationExcludeFilter.forBeanTypes(
+                WebFilterChainProxy.class, SecurityWebFilterChain.class, ReactiveAuthenticationManager.class,
+                ConnectionFactory.class, DatabaseClient.class, ReactiveCrudRepository.class);
+    }
+
+    /**
+     * Lets a training run stop by itself once started, see the cds profile in pom.xml
+     */
+    @Bean
+    @ConditionalOnProperty("startup.exit-on-ready")
+    public ApplicationListener<ApplicationReadyEvent> exitOnReady(){
+        return event -> System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+}
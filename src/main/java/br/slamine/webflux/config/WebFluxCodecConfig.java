@@ -0,0 +1,40 @@
+package br.slamine.webflux.config;
+
+import br.slamine.webflux.codec.AnimeJsonEncoder;
+import br.slamine.webflux.codec.CodecMediaTypes;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.util.MimeType;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+import java.util.List;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebFluxCodecConfig implements WebFluxConfigurer {
+    private static final MimeType[] JSON_MIME_TYPES = {
+            MediaType.APPLICATION_JSON,
+            new MediaType("application", "*+json"),
+            CodecMediaTypes.APPLICATION_NDJSON
+    };
+
+    private final ObjectMapper objectMapper;
+    private final AnimeJsonEncoder animeJsonEncoder;
+
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        //Jackson only knows application/stream+json as a stream of json documents, so application/x-ndjson is added to it
+        Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(objectMapper, JSON_MIME_TYPES);
+        encoder.setStreamingMediaTypes(List.of(MediaType.APPLICATION_STREAM_JSON, CodecMediaTypes.APPLICATION_NDJSON));
+
+        configurer.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper, JSON_MIME_TYPES));
+        configurer.defaultCodecs().jackson2JsonEncoder(encoder);
+        //Custom writers for a given type come before the default ones that write any Object, Jackson included
+        configurer.customCodecs().register(animeJsonEncoder);
+    }
+}
@@ -1,17 +1,34 @@
 package br.slamine.webflux.controller;
 
+import br.slamine.webflux.codec.CodecMediaTypes;
 import br.slamine.webflux.domain.Anime;
+import br.slamine.webflux.domain.AnimeImportChunk;
+import br.slamine.webflux.domain.AnimeLookup;
+import br.slamine.webflux.domain.AnimePage;
+import br.slamine.webflux.domain.AnimePageVersion;
+import br.slamine.webflux.exception.AnimeNotFoundException;
+import br.slamine.webflux.exception.AnimeVersionConflictException;
+import br.slamine.webflux.service.AnimeImportService;
 import br.slamine.webflux.service.AnimeService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @RequiredArgsConstructor
 @RestController
@@ -19,22 +36,81 @@ import java.util.List;
 @Slf4j
 public class AnimeController {
     private final AnimeService animeService;
+    private final AnimeStreamWriter animeStreamWriter;
+    private final AnimeImportService animeImportService;
 
-    @GetMapping
+    /**
+     * The page version is read first: a write between the two reads gives a body newer than its ETag,
+     * which only costs one more 200 on the next poll, never a stale 304.
+     * No Last-Modified here, a deleted row changes the page without making it any newer
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasRole('USER')")
+    public Mono<ResponseEntity<AnimePage>> listAll(@RequestParam(defaultValue = "0") int after,
+                                                   @RequestParam(required = false) Integer limit,
+                                                   ServerWebExchange exchange){
+        log.info("Requesting animes after id={} limit={}", after, limit);
+        return animeService.findPageVersion(after, limit)
+                .flatMap(version -> {
+                    String etag = pageETag(after, limit, version);
+                    if(exchange.checkNotModified(etag)){
+                        return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build());
+                    }
+                    return animeService.findPage(after, limit)
+                            .map(page -> ResponseEntity.ok().eTag(etag).body(page));
+                });
+    }
+
+    /**
+     * Replaces N GET /animes/{id}: one authentication, one query for whatever isn't cached
+     */
+    @GetMapping(params = "ids", produces = {MediaType.APPLICATION_JSON_VALUE, CodecMediaTypes.APPLICATION_NDJSON_VALUE})
     @ResponseStatus(HttpStatus.OK)
     @PreAuthorize("hasRole('USER')")
-    public Flux<Anime> listAll(){
-        log.info("Requesting all animes");
-        return animeService.findAll();
+    public Flux<AnimeLookup> findAllById(@RequestParam List<Integer> ids){
+        log.info("Requesting {} animes by id", ids.size());
+        return animeService.findAllById(ids);
+    }
 
+    @GetMapping(produces = {CodecMediaTypes.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_STREAM_JSON_VALUE})
+    @PreAuthorize("hasRole('USER')")
+    public Mono<Void> streamAll(ServerHttpResponse response){
+        log.info("Streaming all animes as ndjson");
+        return animeStreamWriter.writeNdjson(animeService.findAll(), response);
     }
 
-    @GetMapping(path = "{id}")
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('USER')")
+    public Mono<Void> streamAllEvents(ServerHttpResponse response){
+        log.info("Streaming all animes as server-sent events");
+        return animeStreamWriter.writeEventStream(animeService.findAll(), response);
+    }
+
+    @GetMapping(path = "search", produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseStatus(HttpStatus.OK)
-    public Mono<Anime> findById(@PathVariable int id){
-        log.info("Requesting anime for id={}",id);
-        return animeService.findById(id);
+    @PreAuthorize("hasRole('USER')")
+    public Flux<Anime> search(@RequestParam String q, @RequestParam(required = false) Integer limit){
+        log.debug("Searching animes for q={} limit={}", q, limit);//debug: autocomplete sends one per key stroke
+        return animeService.search(q, limit);
+    }
 
+    /**
+     * ResponseEntityResultHandler answers 304 from the ETag and Last-Modified headers before the body is written
+     */
+    @GetMapping(path = "{id}")
+    public Mono<ResponseEntity<Anime>> findById(@PathVariable int id){
+        log.info("Requesting anime for id={}",id);
+        return animeService.findById(id)
+                .map(anime -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if(anime.getVersion() != null){
+                        response.eTag(animeETag(anime));
+                    }
+                    if(anime.getUpdatedAt() != null){
+                        response.lastModified(anime.getUpdatedAt());
+                    }
+                    return response.body(anime);
+                });
     }
 
     @PostMapping(consumes = "application/json")
@@ -49,10 +125,52 @@ public class AnimeController {
         return animeService.saveAll(animes);
     }
 
+    @PostMapping(path = "import",
+            consumes = {CodecMediaTypes.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_STREAM_JSON_VALUE},
+            produces = {CodecMediaTypes.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_STREAM_JSON_VALUE})
+    @ResponseStatus(HttpStatus.CREATED)
+    public Flux<AnimeImportChunk> importAll(@Valid @RequestBody Flux<Anime> animes){
+        return animeImportService.importAll(animes);
+    }
+
+    /**
+     * If-Match takes the ETags returned by findById: the update fails with 412 unless the anime still has one of them,
+     * or, with *, unless it still exists. Without If-Match the version in the body, if any, is checked the same way
+     * but fails with 409
+     */
     @PutMapping(path = "{id}")
     @ResponseStatus(HttpStatus.OK)
-    public Mono<?> update(@PathVariable int id,@Valid @RequestBody Anime anime){
-        return animeService.update(anime.withId(id));
+    public Mono<?> update(@PathVariable int id, @Valid @RequestBody Anime anime,
+                         @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        if(ifMatch == null){
+            return animeService.update(anime.withId(id));
+        }
+        //A precondition on a missing anime is a failed precondition, not a 404
+        return updateIfMatch(anime.withId(id), ifMatch)
+                .onErrorMap(AnimeNotFoundException.class, e -> new AnimeVersionConflictException(HttpStatus.PRECONDITION_FAILED));
+    }
+
+    private Mono<?> updateIfMatch(Anime anime, String ifMatch){
+        List<Long> versions = new ArrayList<>();
+        for(String etag : ifMatch.split(",")){
+            etag = etag.trim();
+            if("*".equals(etag)){
+                return animeService.update(anime.withVersion(null), HttpStatus.PRECONDITION_FAILED);
+            }
+            Long version = versionOf(anime.getId(), etag);
+            if(version != null && !versions.contains(version)){
+                versions.add(version);
+            }
+        }
+        //At most one of them is current. Versions only grow, so the newest is tried first
+        versions.sort(Comparator.reverseOrder());
+        return Flux.fromIterable(versions)
+                .concatMap(version -> animeService.update(anime.withVersion(version), HttpStatus.PRECONDITION_FAILED)
+                        .then(Mono.just(version))
+                        .onErrorResume(AnimeVersionConflictException.class, e -> Mono.empty()))
+                .next()
+                .switchIfEmpty(Mono.error(() -> new AnimeVersionConflictException(HttpStatus.PRECONDITION_FAILED)))
+                .then();
     }
 
     @DeleteMapping(path = "{id}")
@@ -60,4 +178,32 @@ public class AnimeController {
     public Mono<?> delete(@PathVariable int id){
         return animeService.delete(id);
     }
+
+    //Strong validator: the version changes on every write, so the same version means the same representation
+    private static String animeETag(Anime anime){
+        return "\"" + anime.getId() + '-' + anime.getVersion() + '"';
+    }
+
+    //Null when it isn't one of our ETags for this anime, weak ETags included: If-Match only takes strong ones
+    private static Long versionOf(int id, String etag){
+        String prefix = "\"" + id + '-';
+        if(!etag.startsWith(prefix) || !etag.endsWith("\"") || etag.length() == prefix.length() + 1){
+            return null;
+        }
+        try{
+            return Long.parseLong(etag.substring(prefix.length(), etag.length() - 1));
+        }catch (NumberFormatException e){
+            return null;
+        }
+    }
+
+    private static String pageETag(int after, Integer limit, AnimePageVersion version){
+        Instant lastModified = version.getLastModified();
+        return "\"" + after + '-' + limit + '-' + version.getCount() + '-' + version.getLastId()
+                + '-' + (lastModified == null ? "0" : Long.toHexString(epochMicros(lastModified))) + '"';
+    }
+
+    private static long epochMicros(Instant instant){
+        return TimeUnit.SECONDS.toMicros(instant.getEpochSecond()) + TimeUnit.NANOSECONDS.toMicros(instant.getNano());
+    }
 }
@@ -0,0 +1,80 @@
+package br.slamine.webflux.controller;
+
+import br.slamine.webflux.codec.AnimeJsonEncoder;
+import br.slamine.webflux.codec.CodecMediaTypes;
+import br.slamine.webflux.config.AnimeProperties;
+import br.slamine.webflux.domain.Anime;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.PooledDataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes animes straight to the response as they come from the database, flushing every
+ * "anime.stream.flush-size" elements instead of letting the codec collect a JSON array
+ */
+@Component
+@RequiredArgsConstructor
+public class AnimeStreamWriter {
+    private static final byte[] NEW_LINE = "\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EVENT_ID = "id:".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EVENT_DATA = "data:".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EVENT_END = "\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final AnimeJsonEncoder animeJsonEncoder;
+    private final AnimeProperties animeProperties;
+
+    public Mono<Void> writeNdjson(Flux<Anime> animes, ServerHttpResponse response){
+        response.getHeaders().setContentType(CodecMediaTypes.APPLICATION_NDJSON);
+        return write(animes, response, (anime, buffer) -> {
+            animeJsonEncoder.write(anime, buffer);
+            buffer.write(NEW_LINE);
+        });
+    }
+
+    public Mono<Void> writeEventStream(Flux<Anime> animes, ServerHttpResponse response){
+        response.getHeaders().setContentType(MediaType.TEXT_EVENT_STREAM);
+        return write(animes, response, (anime, buffer) -> {
+            buffer.write(EVENT_ID);
+            buffer.write(String.valueOf(anime.getId()), StandardCharsets.UTF_8);
+            buffer.write(NEW_LINE);
+            buffer.write(EVENT_DATA);
+            animeJsonEncoder.write(anime, buffer);
+            buffer.write(EVENT_END);
+        });
+    }
+
+    private Mono<Void> write(Flux<Anime> animes, ServerHttpResponse response, AnimeWriter writer){
+        DataBufferFactory bufferFactory = response.bufferFactory();
+        Flux<DataBuffer> buffers = animes
+                .map(anime -> encode(anime, bufferFactory, writer))
+                .doOnDiscard(PooledDataBuffer.class, DataBufferUtils::release);
+
+        //Every window is flushed as soon as it completes, window(n) keeps the demand bounded to n elements
+        return response.writeAndFlushWith(buffers.window(animeProperties.getStream().getFlushSize()));
+    }
+
+    private DataBuffer encode(Anime anime, DataBufferFactory bufferFactory, AnimeWriter writer){
+        DataBuffer buffer = bufferFactory.allocateBuffer();
+        try{
+            writer.write(anime, buffer);
+            return buffer;
+        }catch (RuntimeException e){
+            DataBufferUtils.release(buffer);
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    private interface AnimeWriter {
+        void write(Anime anime, DataBuffer buffer);
+    }
+}
@@ -0,0 +1,34 @@
+package br.slamine.webflux.controller;
+
+import br.slamine.webflux.domain.AuthToken;
+import br.slamine.webflux.security.SignedTokenService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("auth")
+@Slf4j
+public class AuthController {
+    private final SignedTokenService signedTokenService;
+
+    @PostMapping(path = "token")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<AuthToken> token(@AuthenticationPrincipal UserDetails user){
+        //Requests authenticated by a token have no UserDetails: a token can't be renewed without the password
+        if(user == null){
+            return Mono.error(new ResponseStatusException(HttpStatus.FORBIDDEN, "A token is only issued after a password check"));
+        }
+        log.info("Issuing token for username={}", user.getUsername());
+        return Mono.fromSupplier(() -> signedTokenService.issue(user));
+    }
+}
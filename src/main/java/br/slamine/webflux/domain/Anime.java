@@ -1,11 +1,15 @@
 package br.slamine.webflux.domain;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
+import java.time.Instant;
 
 @Data
 @AllArgsConstructor
@@ -19,4 +23,14 @@ public class Anime {
     @NotNull
     @NotEmpty(message = "The name of this anime cannot be empty")
     private String name;
+    //Set by the application on every write, ETag and Last-Modified come from it
+    //ALTER TABLE anime ADD COLUMN updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+    @Column("updated_at")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Instant updatedAt;
+    //Incremented by every update, an update with a version only applies if it is still the current one
+    //ALTER TABLE anime ADD COLUMN version BIGINT NOT NULL DEFAULT 0
+    @Version
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long version;
 }
@@ -0,0 +1,18 @@
+package br.slamine.webflux.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class AnimeImportChunk {
+    private long chunk;//0 based position of the chunk in the import
+    private int inserted;
+    private long totalInserted;//Animes committed since the import started, this chunk included
+    private Integer firstId;
+    private Integer lastId;
+}
@@ -0,0 +1,21 @@
+package br.slamine.webflux.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One of the ids asked to GET /animes?ids=, a missing one is reported here instead of failing the whole request
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class AnimeLookup {
+    private int id;
+    private int status;//200 or 404, as GET /animes/{id} would have answered
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Anime anime;
+}
@@ -0,0 +1,17 @@
+package br.slamine.webflux.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class AnimePage {
+    private List<Anime> content;
+    private Integer next;//id to be sent as "after" to fetch the next page, null when this is the last one
+}
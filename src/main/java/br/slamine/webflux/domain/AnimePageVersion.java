@@ -0,0 +1,21 @@
+package br.slamine.webflux.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Aggregate of the rows a page is read from: any insert, update or delete of one of them changes it
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class AnimePageVersion {
+    private long count;
+    private Integer lastId;//null when there are no rows
+    private Instant lastModified;//null when there are no rows
+}
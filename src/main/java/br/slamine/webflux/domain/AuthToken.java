@@ -0,0 +1,18 @@
+package br.slamine.webflux.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class AuthToken {
+    private String token;
+    private String tokenType;//Value to put before the token in the Authorization header
+    private Instant expiresAt;
+}
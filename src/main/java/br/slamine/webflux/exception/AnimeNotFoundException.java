@@ -0,0 +1,20 @@
+package br.slamine.webflux.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Not found is an expected outcome (e.g. scrapers walking ids), so it doesn't pay for a stack trace.
+ * It isn't shared as a singleton because Reactor checkpoints add suppressed exceptions to the error
+ */
+public class AnimeNotFoundException extends ResponseStatusException {
+
+    public AnimeNotFoundException() {
+        super(HttpStatus.NOT_FOUND, "Anime not found");
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
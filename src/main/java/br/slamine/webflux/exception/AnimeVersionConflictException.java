@@ -0,0 +1,20 @@
+package br.slamine.webflux.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * The anime was changed since the client read it. Expected under concurrent writers, so no stack trace either:
+ * 409 when the version came in the body, 412 when it came in If-Match
+ */
+public class AnimeVersionConflictException extends ResponseStatusException {
+
+    public AnimeVersionConflictException(HttpStatus status) {
+        super(status, "Anime was changed by someone else, read it again before updating");
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
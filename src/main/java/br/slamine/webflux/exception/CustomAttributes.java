@@ -1,15 +1,20 @@
 package br.slamine.webflux.exception;
 
+import io.r2dbc.spi.R2dbcTimeoutException;
 import org.springframework.boot.web.error.ErrorAttributeOptions;
 import org.springframework.boot.web.reactive.error.DefaultErrorAttributes;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.pool.PoolAcquirePendingLimitException;
 
 import java.util.Map;
+import java.util.concurrent.TimeoutException;
 
 @Component
 public class CustomAttributes extends DefaultErrorAttributes {
+    static final String RESPONSE_STATUS_DEVELOPER_MESSAGE = "A ResponseStatusException Happened";
 
     @Override
     public Map<String, Object> getErrorAttributes(ServerRequest request, ErrorAttributeOptions options) {
@@ -18,8 +23,27 @@ public class CustomAttributes extends DefaultErrorAttributes {
         if(throwable instanceof ResponseStatusException){
             ResponseStatusException ex = (ResponseStatusException) throwable;
             errorAttributes.put("message", ex.getMessage());
-            errorAttributes.put("developerMessage", "A ResponseStatusException Happened");
+            errorAttributes.put("developerMessage", RESPONSE_STATUS_DEVELOPER_MESSAGE);
+        } else if(isConnectionPoolSaturated(throwable)){
+            errorAttributes.put("status", HttpStatus.SERVICE_UNAVAILABLE.value());
+            errorAttributes.put("error", HttpStatus.SERVICE_UNAVAILABLE.getReasonPhrase());
+            errorAttributes.put("message", "Database is busy, try again later");
+            errorAttributes.put("developerMessage", "No database connection available in time");
         }
         return errorAttributes;
     }
+
+    /**
+     * The pool rejects the request when too many are already waiting for a connection, or when it waited
+     * longer than the acquire timeout. Spring wraps both in a DataAccessResourceFailureException
+     */
+    static boolean isConnectionPoolSaturated(Throwable throwable){
+        for(Throwable cause = throwable; cause != null; cause = cause.getCause()){
+            if(cause instanceof PoolAcquirePendingLimitException
+                    || (cause instanceof R2dbcTimeoutException && cause.getCause() instanceof TimeoutException)){
+                return true;
+            }
+        }
+        return false;
+    }
 }
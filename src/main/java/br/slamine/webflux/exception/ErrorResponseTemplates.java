@@ -0,0 +1,43 @@
+package br.slamine.webflux.exception;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * JSON bodies of ResponseStatusException errors, encoded once per distinct status and message:
+ * only the request path is encoded per response. The fields are the ones CustomAttributes gives,
+ * without timestamp and requestId
+ */
+class ErrorResponseTemplates {
+    private static final JsonStringEncoder ENCODER = JsonStringEncoder.getInstance();
+    private static final byte[] SUFFIX = "\"}".getBytes(StandardCharsets.UTF_8);
+
+    //Messages may carry user input (e.g. a malformed id), so the number of templates is bounded
+    private final Cache<String, byte[]> prefixes = Caffeine.newBuilder()
+            .maximumSize(1_000)
+            .build();
+
+    byte[] render(ResponseStatusException ex, String path) {
+        byte[] prefix = prefixes.get(ex.getStatus().value() + ex.getMessage(), key -> prefix(ex.getStatus(), ex.getMessage()));
+        byte[] encodedPath = ENCODER.quoteAsUTF8(path);
+        byte[] body = Arrays.copyOf(prefix, prefix.length + encodedPath.length + SUFFIX.length);
+        System.arraycopy(encodedPath, 0, body, prefix.length, encodedPath.length);
+        System.arraycopy(SUFFIX, 0, body, prefix.length + encodedPath.length, SUFFIX.length);
+        return body;
+    }
+
+    private static byte[] prefix(HttpStatus status, String message) {
+        String prefix = "{\"status\":" + status.value()
+                + ",\"error\":\"" + new String(ENCODER.quoteAsString(status.getReasonPhrase()))
+                + "\",\"message\":\"" + new String(ENCODER.quoteAsString(message))
+                + "\",\"developerMessage\":\"" + CustomAttributes.RESPONSE_STATUS_DEVELOPER_MESSAGE
+                + "\",\"path\":\"";
+        return prefix.getBytes(StandardCharsets.UTF_8);
+    }
+}
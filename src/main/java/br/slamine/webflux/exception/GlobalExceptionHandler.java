@@ -6,12 +6,18 @@ import org.springframework.boot.web.error.ErrorAttributeOptions;
 import org.springframework.boot.web.reactive.error.ErrorAttributes;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
+import org.springframework.validation.BindingResult;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.server.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
 import java.util.Map;
@@ -22,6 +28,7 @@ import static org.springframework.boot.web.error.ErrorAttributeOptions.*;
 @Component//GlocalExceptionHandler need to be spring "Bean" so spring container can Inject it
 @Order(-2)//Add priority to GlobalExceptionHandler opposite to AbstractErrorWebExceptionHandler which is defined to priority -1
 public class GlobalExceptionHandler extends AbstractErrorWebExceptionHandler {
+    private final ErrorResponseTemplates errorResponseTemplates = new ErrorResponseTemplates();
 
     public GlobalExceptionHandler(
             ErrorAttributes errorAttributes,
@@ -32,6 +39,33 @@ public class GlobalExceptionHandler extends AbstractErrorWebExceptionHandler {
         this.setMessageWriters(codecConfigurer.getWriters());
     }
 
+    /**
+     * Client errors raised as ResponseStatusException (not found, bad request...) are the most common ones,
+     * they get a pre-encoded body written straight to the response, so do the requests shed under overload.
+     * Everything else, and any request asking for the trace, goes through the full error attributes
+     */
+    @Override
+    public Mono<Void> handle(ServerWebExchange exchange, Throwable throwable) {
+        if(!isFastPathEligible(exchange, throwable)){
+            return super.handle(exchange, throwable);
+        }
+        ResponseStatusException ex = (ResponseStatusException) throwable;
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(ex.getStatus());
+        response.getHeaders().putAll(ex.getResponseHeaders());
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        byte[] body = errorResponseTemplates.render(ex, exchange.getRequest().getPath().value());
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(body)));
+    }
+
+    private boolean isFastPathEligible(ServerWebExchange exchange, Throwable throwable){
+        return throwable instanceof ResponseStatusException
+                && (((ResponseStatusException) throwable).getStatus().is4xxClientError() || throwable instanceof ServerOverloadedException)
+                && !(throwable instanceof BindingResult)//Validation errors list the invalid fields
+                && !exchange.getResponse().isCommitted()
+                && !isTraceEnabled(exchange.getRequest().getURI().getRawQuery());
+    }
+
     @Override
     protected RouterFunction<ServerResponse> getRoutingFunction(ErrorAttributes errorAttributes) {
         return RouterFunctions.route(RequestPredicates.all(), this::formatErrorResponse);//Apply the exception handler to all request regardless the protocol used
@@ -44,7 +78,16 @@ public class GlobalExceptionHandler extends AbstractErrorWebExceptionHandler {
         Map<String, Object> errorAttributesMap = getErrorAttributes(request, errorAttributeOptions);
         int status = (int) Optional.of(errorAttributesMap.get("status")).orElse(500);
 
+        Throwable error = getError(request);
         return ServerResponse.status(status)
+                .headers(headers -> {
+                    if(error instanceof ResponseStatusException){
+                        headers.addAll(((ResponseStatusException) error).getResponseHeaders());//e.g. Retry-After of 429
+                    }
+                    if(status == HttpStatus.SERVICE_UNAVAILABLE.value()){
+                        headers.set(HttpHeaders.RETRY_AFTER, "1");//Saturation is short lived, clients should back off a little
+                    }
+                })
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(BodyInserters.fromValue(errorAttributesMap));
     }
@@ -0,0 +1,28 @@
+package br.slamine.webflux.exception;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Too many requests in flight, this one was shed without being processed. It must cost next to nothing,
+ * so no stack trace, and it gets the pre-encoded body like client errors do
+ */
+public class ServerOverloadedException extends ResponseStatusException {
+
+    public ServerOverloadedException() {
+        super(HttpStatus.SERVICE_UNAVAILABLE, "Server is overloaded, try again later");
+    }
+
+    @Override
+    public HttpHeaders getResponseHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+        return headers;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
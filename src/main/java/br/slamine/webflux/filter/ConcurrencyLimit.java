@@ -0,0 +1,101 @@
+package br.slamine.webflux.filter;
+
+import br.slamine.webflux.config.ConcurrencyLimitProperties;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Requests allowed in flight for one route group, adjusted by AIMD (additive increase, multiplicative decrease):
+ * +1 for a response under the latency threshold while the limit is at least half used, times the backoff ratio
+ * for a slower or failed one. Requests of a burst that slowed down all come back slow together, so the limit
+ * shrinks at most once per threshold instead of once per request.
+ * Everything is an atomic updated with compare-and-set, nothing waits
+ */
+final class ConcurrencyLimit {
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long threshold;
+    private final double backoffRatio;
+    private final LongSupplier nanoTime;
+
+    private final AtomicInteger limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong lastDecrease;
+
+    ConcurrencyLimit(ConcurrencyLimitProperties.Group group, LongSupplier nanoTime) {
+        if (group.getMinLimit() < 1 || group.getMinLimit() > group.getMaxLimit()
+                || group.getBackoffRatio() <= 0 || group.getBackoffRatio() >= 1) {
+            throw new IllegalArgumentException("Concurrency limit " + group.getName()
+                    + " needs 1 <= min-limit <= max-limit and 0 < backoff-ratio < 1");
+        }
+        this.name = group.getName() != null ? group.getName() : String.join(",", group.getPaths());
+        this.minLimit = group.getMinLimit();
+        this.maxLimit = group.getMaxLimit();
+        this.threshold = group.getLatencyThreshold().toNanos();
+        this.backoffRatio = group.getBackoffRatio();
+        this.nanoTime = nanoTime;
+        this.limit = new AtomicInteger(Math.max(minLimit, Math.min(maxLimit, group.getInitialLimit())));
+        this.lastDecrease = new AtomicLong(nanoTime.getAsLong() - threshold);
+    }
+
+    /**
+     * @return false when the limit is reached, the request must be rejected and not released
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit.get()) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param latency nanoseconds to the response (its first byte for streams), ignored when dropped
+     * @param dropped the request failed because of the server (5xx, timeouts...)
+     */
+    void release(long latency, boolean dropped) {
+        int current = inFlight.getAndDecrement();
+        if (dropped || latency > threshold) {
+            long now = nanoTime.getAsLong();
+            long last = lastDecrease.get();
+            if (now - last >= threshold && lastDecrease.compareAndSet(last, now)) {
+                limit.updateAndGet(value -> Math.max(minLimit, (int) (value * backoffRatio)));
+            }
+        } else if (current * 2 >= limit.get()) {
+            //Only grow when the limit is what holds requests back, not while it is mostly unused
+            limit.updateAndGet(value -> Math.min(maxLimit, value + 1));
+        }
+    }
+
+    /**
+     * The request was cancelled (client gone): its slot is given back without telling anything about latency
+     */
+    void cancel() {
+        inFlight.decrementAndGet();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getLimit() {
+        return limit.get();
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    long getRejected() {
+        return rejected.get();
+    }
+}
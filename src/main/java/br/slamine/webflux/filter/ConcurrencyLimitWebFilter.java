@@ -0,0 +1,175 @@
+package br.slamine.webflux.filter;
+
+import br.slamine.webflux.config.ConcurrencyLimitProperties;
+import br.slamine.webflux.exception.ServerOverloadedException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Caps the requests in flight per route group ("concurrency-limit.groups") with a limit that follows the observed
+ * latency, see ConcurrencyLimit. Past the limit requests are answered 503 right away instead of queueing behind
+ * a slow database: the accepted ones keep their latency and the rejected ones cost almost nothing.
+ * It runs before the SecurityWebFilterChain so shed requests don't pay for authentication either,
+ * and after the metrics filter so they still show up in http.server.requests.
+ * Streams hold their slot until the last row and their latency is the first byte's, so they need a group of their own
+ * ("accepts") with a fixed limit: in a latency based group they would look fast while holding slots for minutes
+ */
+@Component
+public class ConcurrencyLimitWebFilter implements WebFilter, Ordered, MeterBinder {
+    private static final int ORDER = -200;//WebFilterChainProxy is -100
+
+    private final List<Group> groups = new ArrayList<>();
+
+    public ConcurrencyLimitWebFilter(ConcurrencyLimitProperties properties) {
+        if (properties.isEnabled()) {
+            for (ConcurrencyLimitProperties.Group group : properties.getGroups()) {
+                groups.add(new Group(group));
+            }
+        }
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ConcurrencyLimit limit = limitOf(exchange.getRequest());
+        if (limit == null) {
+            return chain.filter(exchange);
+        }
+        if (!limit.tryAcquire()) {
+            return Mono.error(new ServerOverloadedException());
+        }
+        long start = System.nanoTime();
+        long[] firstByte = {0};
+        exchange.getResponse().beforeCommit(() -> {
+            firstByte[0] = System.nanoTime();
+            return Mono.empty();
+        });
+        boolean[] failed = {false};
+        return chain.filter(exchange)
+                //An error is turned into a response by the WebExceptionHandlers, after this filter: no status yet
+                .doOnError(error -> failed[0] = isServerFailure(error))
+                .doFinally(signal -> {
+                    if (signal == SignalType.CANCEL) {
+                        limit.cancel();
+                    } else {
+                        long end = firstByte[0] != 0 ? firstByte[0] : System.nanoTime();
+                        limit.release(end - start, failed[0] || isServerFailure(exchange.getResponse()));
+                    }
+                });
+    }
+
+    private ConcurrencyLimit limitOf(ServerHttpRequest request) {
+        for (Group group : groups) {
+            if (group.matches(request)) {
+                return group.limit;
+            }
+        }
+        return null;
+    }
+
+    //Covers the 5xx answered without an error: @ExceptionHandler methods, ResponseEntity, a status set by hand
+    private static boolean isServerFailure(ServerHttpResponse response) {
+        Integer status = response.getRawStatusCode();
+        return status != null && status >= 500;
+    }
+
+    private static boolean isServerFailure(Throwable error) {
+        return !(error instanceof ResponseStatusException)
+                || ((ResponseStatusException) error).getStatus().is5xxServerError();
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Group group : groups) {
+            ConcurrencyLimit limit = group.limit;
+            Gauge.builder("http.server.concurrency.limit", limit, ConcurrencyLimit::getLimit)
+                    .description("Requests allowed in flight, adjusted to the observed latency")
+                    .tag("group", limit.getName())
+                    .register(registry);
+            Gauge.builder("http.server.concurrency.in.flight", limit, ConcurrencyLimit::getInFlight)
+                    .description("Requests in flight")
+                    .tag("group", limit.getName())
+                    .register(registry);
+            FunctionCounter.builder("http.server.concurrency.rejected", limit, ConcurrencyLimit::getRejected)
+                    .description("Requests answered 503 because the limit was reached")
+                    .tag("group", limit.getName())
+                    .register(registry);
+        }
+    }
+
+    private static final class Group {
+        private final List<PathPattern> paths;
+        private final Set<HttpMethod> methods;
+        private final List<MediaType> accepts;
+        private final ConcurrencyLimit limit;
+
+        Group(ConcurrencyLimitProperties.Group group) {
+            this.paths = group.getPaths().stream()
+                    .map(PathPatternParser.defaultInstance::parse)
+                    .collect(Collectors.toList());
+            this.methods = Set.copyOf(group.getMethods());
+            this.accepts = List.copyOf(group.getAccepts());
+            this.limit = new ConcurrencyLimit(group, System::nanoTime);
+        }
+
+        boolean matches(ServerHttpRequest request) {
+            HttpMethod method = request.getMethod();
+            if (!methods.isEmpty() && (method == null || !methods.contains(method))) {
+                return false;
+            }
+            if (!accepts.isEmpty() && !accepts(request)) {
+                return false;
+            }
+            for (PathPattern path : paths) {
+                if (path.matches(request.getPath().pathWithinApplication())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        //includes, not isCompatibleWith: */* accepts a stream but mostly comes from clients expecting JSON
+        private boolean accepts(ServerHttpRequest request) {
+            List<MediaType> accepted;
+            try {
+                accepted = request.getHeaders().getAccept();
+            } catch (InvalidMediaTypeException e) {
+                return false;//Answered 406 by the handler
+            }
+            for (MediaType acceptedType : accepted) {
+                for (MediaType mediaType : accepts) {
+                    if (mediaType.includes(acceptedType)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package br.slamine.webflux.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import java.util.Map;
+
+/**
+ * Adds a {@link ReactiveTimingInterceptor} to the beans of the given types. Beans that already are proxies
+ * (@Transactional services, Spring Data repositories) get the interceptor as their outermost advice,
+ * others are wrapped in a new proxy
+ */
+public class ReactiveTimingBeanPostProcessor implements BeanPostProcessor {
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final Map<Class<?>, String> metricNameByType;
+
+    /**
+     * @param metricNameByType name of the timer to record the Mono/Flux methods of each bean type into
+     */
+    public ReactiveTimingBeanPostProcessor(ObjectProvider<MeterRegistry> meterRegistry, Map<Class<?>, String> metricNameByType) {
+        this.meterRegistry = meterRegistry;
+        this.metricNameByType = metricNameByType;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        for (Map.Entry<Class<?>, String> entry : metricNameByType.entrySet()) {
+            Class<?> type = entry.getKey();
+            if (type.isInstance(bean)) {
+                return instrument(bean, type, entry.getValue());
+            }
+        }
+        return bean;
+    }
+
+    private Object instrument(Object bean, Class<?> type, String metricName) {
+        ReactiveTimingInterceptor interceptor = new ReactiveTimingInterceptor(meterRegistry, metricName, type.getSimpleName());
+        if (bean instanceof Advised && !((Advised) bean).isFrozen()) {
+            ((Advised) bean).addAdvice(0, interceptor);
+            return bean;
+        }
+        ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.setProxyTargetClass(!type.isInterface());
+        proxyFactory.addAdvice(interceptor);
+        return proxyFactory.getProxy(type.getClassLoader());
+    }
+}
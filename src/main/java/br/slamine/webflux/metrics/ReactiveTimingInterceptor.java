@@ -0,0 +1,89 @@
+package br.slamine.webflux.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the Mono/Flux returned by the intercepted methods from subscription to termination, which is when the
+ * work actually happens: timing the method call itself would only measure how long the pipeline takes to assemble.
+ * Timers are tagged with the class, the method and the outcome (success, error or cancel)
+ */
+public class ReactiveTimingInterceptor implements MethodInterceptor {
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final String metricName;
+    private final String className;
+    private final Map<Method, Timers> timers = new ConcurrentHashMap<>();
+
+    public ReactiveTimingInterceptor(ObjectProvider<MeterRegistry> meterRegistry, String metricName, String className) {
+        this.meterRegistry = meterRegistry;
+        this.metricName = metricName;
+        this.className = className;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Class<?> returnType = invocation.getMethod().getReturnType();
+        if (returnType != Mono.class && returnType != Flux.class) {
+            return invocation.proceed();
+        }
+        Object result = invocation.proceed();
+        if (result == null) {
+            return null;
+        }
+        Timers methodTimers = timers.computeIfAbsent(invocation.getMethod(), this::timers);
+        if (result instanceof Mono) {
+            Mono<?> mono = (Mono<?>) result;
+            return Mono.defer(() -> {
+                long start = System.nanoTime();
+                return mono.doFinally(signal -> methodTimers.record(signal, System.nanoTime() - start));
+            });
+        }
+        Flux<?> flux = (Flux<?>) result;
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            return flux.doFinally(signal -> methodTimers.record(signal, System.nanoTime() - start));
+        });
+    }
+
+    private Timers timers(Method method) {
+        MeterRegistry registry = meterRegistry.getObject();
+        return new Timers(timer(registry, method, "success"), timer(registry, method, "error"), timer(registry, method, "cancel"));
+    }
+
+    private Timer timer(MeterRegistry registry, Method method, String outcome) {
+        return Timer.builder(metricName)
+                .tag("class", className)
+                .tag("method", method.getName())
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    //Looked up once per method, so recording allocates nothing
+    private static final class Timers {
+        private final Timer success;
+        private final Timer error;
+        private final Timer cancel;
+
+        private Timers(Timer success, Timer error, Timer cancel) {
+            this.success = success;
+            this.error = error;
+            this.cancel = cancel;
+        }
+
+        private void record(SignalType signal, long nanos) {
+            Timer timer = signal == SignalType.ON_ERROR ? error : signal == SignalType.CANCEL ? cancel : success;
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package br.slamine.webflux.repository;
+
+import br.slamine.webflux.domain.Anime;
+import br.slamine.webflux.domain.AnimePageVersion;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface AnimeCustomRepository {
+
+    /**
+     * Inserts the animes with one multi-row INSERT per chunk of chunkSize rows instead of one INSERT per anime
+     * @return the inserted animes with their generated ids, updatedAt and version, in the same order they were received
+     */
+    Flux<Anime> insertAll(Flux<Anime> animes, int chunkSize);
+
+    /**
+     * Aggregates the same rows findPage(after, limit) reads, without reading the names
+     */
+    Mono<AnimePageVersion> findPageVersion(int after, int limit);
+}
@@ -0,0 +1,56 @@
+package br.slamine.webflux.repository;
+
+import br.slamine.webflux.domain.Anime;
+import br.slamine.webflux.domain.AnimePageVersion;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class AnimeCustomRepositoryImpl implements AnimeCustomRepository {
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Flux<Anime> insertAll(Flux<Anime> animes, int chunkSize) {
+        return animes.buffer(chunkSize)
+                .concatMap(this::insertChunk);
+    }
+
+    private Flux<Anime> insertChunk(List<Anime> chunk) {
+        StringBuilder sql = new StringBuilder("INSERT INTO anime (name, updated_at, version) VALUES ");
+        for (int i = 0; i < chunk.size(); i++) {
+            sql.append(i == 0 ? "(:name" : ", (:name").append(i).append(", :updatedAt, 0)");
+        }
+
+        Instant updatedAt = Instant.now().truncatedTo(ChronoUnit.MICROS);//The database precision
+        DatabaseClient.GenericExecuteSpec insert = databaseClient.execute(sql.toString())
+                .bind("updatedAt", updatedAt);
+        for (int i = 0; i < chunk.size(); i++) {
+            insert = insert.bind("name" + i, chunk.get(i).getName());
+        }
+
+        //Generated keys come back in VALUES order, which is what postgres does for a single multi-row INSERT
+        return insert.filter(statement -> statement.returnGeneratedValues("id"))
+                .map(row -> row.get("id", Integer.class))
+                .all()
+                .zipWithIterable(chunk, (id, anime) -> anime.withId(id).withUpdatedAt(updatedAt).withVersion(0L));
+    }
+
+    @Override
+    public Mono<AnimePageVersion> findPageVersion(int after, int limit) {
+        //The window is the page plus the row findPage reads to know if there is a next one
+        return databaseClient.execute("SELECT COUNT(*) AS count, MAX(id) AS last_id, MAX(updated_at) AS last_modified "
+                + "FROM (SELECT id, updated_at FROM anime WHERE id > :after ORDER BY id LIMIT :limit) page")
+                .bind("after", after)
+                .bind("limit", limit)
+                .map(row -> new AnimePageVersion(row.get("count", Long.class),
+                        row.get("last_id", Integer.class),
+                        row.get("last_modified", Instant.class)))
+                .one();
+    }
+}
@@ -1,10 +1,29 @@
 package br.slamine.webflux.repository;
 
 import br.slamine.webflux.domain.Anime;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-public interface AnimeRepository extends ReactiveCrudRepository<Anime, Integer> {
+import java.time.Instant;
+
+public interface AnimeRepository extends ReactiveCrudRepository<Anime, Integer>, AnimeCustomRepository {
 
     Mono<Anime> findById(int id);
+
+    @Query("SELECT * FROM anime WHERE id > :after ORDER BY id LIMIT :limit")
+    Flux<Anime> findPage(int after, int limit);
+
+    @Query("UPDATE anime SET name = :name, updated_at = :updatedAt, version = version + 1 WHERE id = :id RETURNING *")
+    Mono<Anime> updateName(int id, String name, Instant updatedAt);//Empty when there is no anime with this id
+
+    //The version check is part of the statement, so concurrent writers never lock the row between a read and a write
+    @Query("UPDATE anime SET name = :name, updated_at = :updatedAt, version = version + 1 WHERE id = :id AND version = :version RETURNING *")
+    Mono<Anime> updateNameIfVersion(int id, String name, Instant updatedAt, long version);//Empty when there is no anime with this id and version
+
+    @Modifying
+    @Query("DELETE FROM anime WHERE id = :id")
+    Mono<Integer> deleteAnime(int id);//Number of deleted rows
 }
@@ -0,0 +1,26 @@
+package br.slamine.webflux.security;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.security.web.server.authentication.ServerAuthenticationConverter;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Extracts the token of an {@code Authorization: Bearer <token>} header. Requests without one are left
+ * to the other authentication mechanisms
+ */
+public class BearerTokenAuthenticationConverter implements ServerAuthenticationConverter {
+    private static final String PREFIX = SignedTokenService.TOKEN_TYPE + " ";
+
+    @Override
+    public Mono<Authentication> convert(ServerWebExchange exchange) {
+        String authorization = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authorization == null || !authorization.regionMatches(true, 0, PREFIX, 0, PREFIX.length())) {
+            return Mono.empty();
+        }
+        String token = authorization.substring(PREFIX.length()).trim();
+        return Mono.just(new PreAuthenticatedAuthenticationToken(token, token));
+    }
+}
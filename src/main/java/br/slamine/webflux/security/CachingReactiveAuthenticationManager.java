@@ -0,0 +1,104 @@
+package br.slamine.webflux.security;
+
+import br.slamine.webflux.config.AuthProperties;
+import br.slamine.webflux.service.MyUserDetailsService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Remembers credentials that already passed the (slow on purpose) password check of the delegate.
+ * Entries are keyed by a salted SHA-256 of username + password, so no password is kept in memory,
+ * and hold the encoded password they were verified against: once the user's password changes the entry is ignored.
+ * Rejected credentials evict the user, which may be cached with an outdated password
+ */
+public class CachingReactiveAuthenticationManager implements ReactiveAuthenticationManager {
+    private final ReactiveAuthenticationManager delegate;
+    private final MyUserDetailsService userDetailsService;
+    private final Cache<String, String> verifiedCredentials;
+    private final byte[] salt = new byte[32];
+
+    public CachingReactiveAuthenticationManager(ReactiveAuthenticationManager delegate,
+                                                MyUserDetailsService userDetailsService,
+                                                AuthProperties.CredentialsCache properties) {
+        this.delegate = delegate;
+        this.userDetailsService = userDetailsService;
+        this.verifiedCredentials = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .recordStats()
+                .build();
+        new SecureRandom().nextBytes(salt);
+    }
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        if (!(authentication instanceof UsernamePasswordAuthenticationToken) || authentication.getCredentials() == null) {
+            return delegate.authenticate(authentication);
+        }
+        return Mono.defer(() -> {
+            String username = authentication.getName();
+            String key = credentialsKey(username, authentication.getCredentials().toString());
+            String verifiedPassword = verifiedCredentials.getIfPresent(key);
+            if (verifiedPassword == null) {
+                return authenticateAndRemember(authentication, key);
+            }
+
+            return userDetailsService.findByUsername(username)
+                    .filter(user -> verifiedPassword.equals(user.getPassword()) && isUsable(user))
+                    .<Authentication>map(user -> new UsernamePasswordAuthenticationToken(user, user.getPassword(), user.getAuthorities()))
+                    .switchIfEmpty(Mono.defer(() -> {
+                        //Password changed or account no longer usable: the delegate checks it again and raises the proper error
+                        verifiedCredentials.invalidate(key);
+                        return authenticateAndRemember(authentication, key);
+                    }));
+        });
+    }
+
+    public Cache<String, String> getVerifiedCredentials() {
+        return verifiedCredentials;
+    }
+
+    private Mono<Authentication> authenticateAndRemember(Authentication authentication, String key) {
+        return delegate.authenticate(authentication)
+                .doOnError(BadCredentialsException.class, error -> userDetailsService.evict(authentication.getName()))
+                .doOnNext(result -> remember(key, result));
+    }
+
+    private void remember(String key, Authentication result) {
+        if (result.getPrincipal() instanceof UserDetails) {
+            String password = ((UserDetails) result.getPrincipal()).getPassword();
+            if (password != null) {
+                verifiedCredentials.put(key, password);
+            }
+        }
+    }
+
+    private boolean isUsable(UserDetails user) {
+        return user.isEnabled() && user.isAccountNonLocked() && user.isAccountNonExpired() && user.isCredentialsNonExpired();
+    }
+
+    private String credentialsKey(String username, String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            digest.update(username.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);//Separator: ("ab", "c") and ("a", "bc") must not collide
+            digest.update(password.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package br.slamine.webflux.security;
+
+import br.slamine.webflux.exception.TooManyRequestsException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Answers 429 with Retry-After to an IP sending passwords too fast, before HTTP Basic and form login check them.
+ * RateLimitWebFilter runs after authentication, so it never sees wrong passwords, while each of them costs a
+ * bcrypt check. Clients making many requests are expected to use bearer tokens, which don't go through here
+ */
+public class PasswordAttemptWebFilter implements WebFilter {
+    private static final String BASIC = "Basic ";
+    private static final String LOGIN_PATH = "/login";
+
+    private final RateLimiter rateLimiter;
+
+    public PasswordAttemptWebFilter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!hasPassword(exchange.getRequest())) {
+            return chain.filter(exchange);
+        }
+        long wait = rateLimiter.acquirePasswordAttempt(exchange.getRequest());
+        if (wait > 0) {
+            return Mono.error(new TooManyRequestsException(RateLimitWebFilter.ceilSeconds(wait)));
+        }
+        return chain.filter(exchange);
+    }
+
+    private static boolean hasPassword(ServerHttpRequest request) {
+        String authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && authorization.regionMatches(true, 0, BASIC, 0, BASIC.length())) {
+            return true;
+        }
+        return request.getMethod() == HttpMethod.POST && LOGIN_PATH.equals(request.getPath().pathWithinApplication().value());
+    }
+}
@@ -0,0 +1,49 @@
+package br.slamine.webflux.security;
+
+import br.slamine.webflux.exception.TooManyRequestsException;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers 429 with Retry-After once the caller used up its tokens, before the request reaches any controller.
+ * It runs inside the SecurityWebFilterChain, right after authentication, to know who the caller is.
+ * Password attempts are limited before authentication by PasswordAttemptWebFilter
+ */
+public class RateLimitWebFilter implements WebFilter {
+    private final RateLimiter rateLimiter;
+
+    public RateLimitWebFilter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!rateLimiter.isEnabled()) {
+            return chain.filter(exchange);
+        }
+        return ReactiveSecurityContextHolder.getContext()
+                .flatMap(context -> Mono.justOrEmpty(context.getAuthentication()))
+                .filter(authentication -> authentication.isAuthenticated() && !(authentication instanceof AnonymousAuthenticationToken))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(authentication -> {
+                    long wait = rateLimiter.acquire(exchange.getRequest(), authentication.orElse(null));
+                    if (wait > 0) {
+                        return Mono.error(new TooManyRequestsException(ceilSeconds(wait)));
+                    }
+                    return chain.filter(exchange);
+                });
+    }
+
+    static long ceilSeconds(long nanos) {
+        long second = TimeUnit.SECONDS.toNanos(1);
+        return (nanos + second - 1) / second;
+    }
+}
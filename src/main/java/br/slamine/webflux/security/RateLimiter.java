@@ -0,0 +1,219 @@
+package br.slamine.webflux.security;
+
+import br.slamine.webflux.config.RateLimitProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets per authenticated user, or per IP for anonymous requests, following "rate-limit.rules".
+ * Every rule has its own buckets, so a tighter limit on one route doesn't use up the others.
+ * <p>
+ * A bucket is one AtomicLong (generic cell rate algorithm): the time at which it will be full again. Taking a token
+ * moves it one interval forward with a compare-and-set, nothing is refilled in the background. Buckets live in a
+ * Caffeine cache bounded by "rate-limit.maximum-buckets": a hit is a ConcurrentHashMap read plus the CAS, access
+ * order goes through Caffeine's striped buffers, and buckets idle for "rate-limit.idle-timeout" are dropped.
+ * <p>
+ * Requests carrying a password also have a bucket per IP ("rate-limit.password-attempts") taken before
+ * authentication: a wrong password never gets past it to the rules, yet costs a bcrypt check
+ */
+public class RateLimiter implements MeterBinder {
+    private final List<Rule> rules = new ArrayList<>();
+    private final Rule passwordAttempts;//Null when disabled
+    private final Cache<BucketKey, AtomicLong> buckets;
+    private final LongSupplier nanoTime;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public RateLimiter(RateLimitProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    RateLimiter(RateLimitProperties properties, LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+        long idleTimeout = properties.getIdleTimeout().toNanos();
+        if (properties.isEnabled()) {
+            RateLimitProperties.PasswordAttempts attempts = properties.getPasswordAttempts();
+            passwordAttempts = new Rule("/**", null, null, attempts.getPermitsPerSecond(), attempts.getBurst());
+            idleTimeout = Math.max(idleTimeout, passwordAttempts.tolerance);
+            for (RateLimitProperties.Rule rule : properties.getRules()) {
+                Rule compiled = new Rule(rule);
+                rules.add(compiled);
+                //Dropping a bucket before it is full again would hand out free tokens
+                idleTimeout = Math.max(idleTimeout, compiled.tolerance);
+            }
+        } else {
+            passwordAttempts = null;
+        }
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumBuckets())
+                .expireAfterAccess(Duration.ofNanos(idleTimeout))
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return !rules.isEmpty();
+    }
+
+    /**
+     * Takes a token from the bucket of the first rule matching the request
+     * @param authentication null for anonymous requests, they are limited by remote address
+     * @return 0 when the request is accepted, otherwise the nanoseconds to wait for the next token
+     */
+    public long acquire(ServerHttpRequest request, Authentication authentication) {
+        for (int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+            if (!rule.matches(request, authentication)) {
+                continue;
+            }
+            String caller = authentication != null ? authentication.getName() : remoteAddress(request);
+            if (caller == null) {
+                return 0;
+            }
+            AtomicLong bucket = buckets.get(new BucketKey(i, authentication == null, caller), key -> new AtomicLong(Long.MIN_VALUE));
+            long wait = rule.acquire(bucket, nanoTime.getAsLong());
+            if (wait > 0) {
+                rejected.incrementAndGet();
+            }
+            return wait;
+        }
+        return 0;
+    }
+
+    /**
+     * Takes a token from the password attempts bucket of the remote address
+     * @return 0 when the request may go on to the password check, otherwise the nanoseconds to wait for the next token
+     */
+    public long acquirePasswordAttempt(ServerHttpRequest request) {
+        String address = passwordAttempts == null ? null : remoteAddress(request);
+        if (address == null) {
+            return 0;
+        }
+        AtomicLong bucket = buckets.get(new BucketKey(-1, true, address), key -> new AtomicLong(Long.MIN_VALUE));
+        long wait = passwordAttempts.acquire(bucket, nanoTime.getAsLong());
+        if (wait > 0) {
+            rejected.incrementAndGet();
+        }
+        return wait;
+    }
+
+    private static String remoteAddress(ServerHttpRequest request) {
+        InetSocketAddress address = request.getRemoteAddress();
+        if (address == null) {
+            return null;
+        }
+        return address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("rate.limit.rejected", rejected, AtomicLong::get)
+                .description("Requests answered 429 Too Many Requests")
+                .register(registry);
+        Gauge.builder("rate.limit.buckets", buckets, Cache::estimatedSize)
+                .description("Buckets kept in memory, one per caller and rule")
+                .register(registry);
+    }
+
+    private static final class Rule {
+        private final PathPattern path;
+        private final HttpMethod method;
+        private final String authority;
+        private final long interval;//Nanoseconds per token
+        private final long tolerance;//Nanoseconds of tokens the bucket holds
+
+        Rule(RateLimitProperties.Rule rule) {
+            this(rule.getPath(), rule.getMethod(), rule.getRole(), rule.getPermitsPerSecond(), rule.getBurst());
+        }
+
+        Rule(String path, HttpMethod method, String role, double permitsPerSecond, int burst) {
+            if (permitsPerSecond <= 0 || burst < 1) {
+                throw new IllegalArgumentException("Rate limit of " + path + " needs permits-per-second > 0 and burst >= 1");
+            }
+            this.path = PathPatternParser.defaultInstance.parse(path);
+            this.method = method;
+            this.authority = role == null ? null : "ROLE_" + role;
+            this.interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+            this.tolerance = interval * burst;
+        }
+
+        boolean matches(ServerHttpRequest request, Authentication authentication) {
+            if (method != null && method != request.getMethod()) {
+                return false;
+            }
+            if (authority != null && (authentication == null || !hasAuthority(authentication))) {
+                return false;
+            }
+            return path.matches(request.getPath().pathWithinApplication());
+        }
+
+        private boolean hasAuthority(Authentication authentication) {
+            for (GrantedAuthority grantedAuthority : authentication.getAuthorities()) {
+                if (authority.equals(grantedAuthority.getAuthority())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        long acquire(AtomicLong bucket, long now) {
+            while (true) {
+                long full = bucket.get();
+                long next = Math.max(full, now) + interval;
+                long wait = next - tolerance - now;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (bucket.compareAndSet(full, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+
+    private static final class BucketKey {
+        private final int rule;
+        private final boolean anonymous;//A user named like an IP doesn't share its bucket
+        private final String caller;
+
+        BucketKey(int rule, boolean anonymous, String caller) {
+            this.rule = rule;
+            this.anonymous = anonymous;
+            this.caller = caller;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BucketKey)) {
+                return false;
+            }
+            BucketKey other = (BucketKey) o;
+            return rule == other.rule && anonymous == other.anonymous && caller.equals(other.caller);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rule, anonymous, caller);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package br.slamine.webflux.security;
+
+import br.slamine.webflux.config.AuthProperties;
+import br.slamine.webflux.domain.AuthToken;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.CredentialsExpiredException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Issues and checks short-lived tokens signed with HMAC-SHA256. A token carries the username, the authorities
+ * and the expiry, so checking it needs neither the user store nor bcrypt nor a session: any node sharing the
+ * secret accepts it. The flip side is that a token stays valid until it expires, even if the user changes meanwhile
+ */
+@Slf4j
+@Component
+public class SignedTokenService {
+    public static final String TOKEN_TYPE = "Bearer";
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final Duration timeToLive;
+    //Mac is not thread safe and costly to look up, each thread keeps its own
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+    //Signed tokens only carry authority strings this application issued, so there are few of them; bounded anyway
+    //since tokens signed by other nodes sharing the key may carry any
+    private final Cache<String, List<GrantedAuthority>> parsedAuthorities = Caffeine.newBuilder()
+            .maximumSize(1_000)
+            .build();
+
+    public SignedTokenService(AuthProperties authProperties) {
+        AuthProperties.Token properties = authProperties.getToken();
+        this.key = new SecretKeySpec(secret(properties.getSecret()), ALGORITHM);
+        this.timeToLive = properties.getTimeToLive();
+        newMac();//Fails fast when the key can't be used
+    }
+
+    public AuthToken issue(UserDetails user) {
+        Instant expiresAt = Instant.now().plus(timeToLive);
+        String authorities = user.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.joining(","));
+        String payload = encode(user.getUsername()) + "." + encode(authorities) + "." + expiresAt.getEpochSecond();
+        return AuthToken.builder()
+                .token(payload + "." + ENCODER.encodeToString(sign(payload)))
+                .tokenType(TOKEN_TYPE)
+                .expiresAt(expiresAt)
+                .build();
+    }
+
+    /**
+     * @throws BadCredentialsException when the token is malformed or its signature doesn't match
+     * @throws CredentialsExpiredException when the token is past its expiry
+     */
+    public Authentication verify(String token) {
+        int signatureStart = token.lastIndexOf('.');
+        if (signatureStart < 0) {
+            throw new BadCredentialsException("Invalid token");
+        }
+        String payload = token.substring(0, signatureStart);
+        //Constant time comparison: the time taken must not tell how much of the signature is right
+        if (!MessageDigest.isEqual(sign(payload), decode(token.substring(signatureStart + 1)))) {
+            throw new BadCredentialsException("Invalid token");
+        }
+
+        String[] fields = payload.split("\\.", -1);
+        if (fields.length != 3) {
+            throw new BadCredentialsException("Invalid token");
+        }
+        long expiresAt = parseExpiry(fields[2]);
+        if (Instant.now().getEpochSecond() >= expiresAt) {
+            throw new CredentialsExpiredException("Token expired");
+        }
+        String username = new String(decode(fields[0]), StandardCharsets.UTF_8);
+        String authorities = new String(decode(fields[1]), StandardCharsets.UTF_8);
+        return new UsernamePasswordAuthenticationToken(username, null,
+                parsedAuthorities.get(authorities, SignedTokenService::parseAuthorities));
+    }
+
+    private byte[] sign(String payload) {
+        return macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Token signing key can't be used", e);
+        }
+    }
+
+    private static byte[] secret(String secret) {
+        if (!StringUtils.hasText(secret)) {
+            log.warn("auth.token.secret is not set, using a random key: tokens are only accepted by this node until it restarts");
+            byte[] random = new byte[32];
+            new SecureRandom().nextBytes(random);
+            return random;
+        }
+        byte[] decoded = Base64.getDecoder().decode(secret.trim());
+        if (decoded.length < 32) {
+            throw new IllegalArgumentException("auth.token.secret must hold at least 32 bytes");
+        }
+        return decoded;
+    }
+
+    private static String encode(String value) {
+        return ENCODER.encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] decode(String value) {
+        try {
+            return DECODER.decode(value);
+        } catch (IllegalArgumentException e) {
+            throw new BadCredentialsException("Invalid token", e);
+        }
+    }
+
+    private static long parseExpiry(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new BadCredentialsException("Invalid token", e);
+        }
+    }
+
+    private static List<GrantedAuthority> parseAuthorities(String authorities) {
+        return Collections.unmodifiableList(Arrays.stream(authorities.split(","))
+                .filter(authority -> !authority.isEmpty())
+                .map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toList()));
+    }
+}
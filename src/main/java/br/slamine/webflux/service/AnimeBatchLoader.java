@@ -0,0 +1,120 @@
+package br.slamine.webflux.service;
+
+import br.slamine.webflux.config.AnimeProperties;
+import br.slamine.webflux.domain.Anime;
+import br.slamine.webflux.repository.AnimeRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces the lookups by id made within "anime.lookup.window" (or until "anime.lookup.max-batch-size" distinct ids)
+ * into one SELECT ... WHERE id IN (...), every waiting lookup gets its own row back.
+ * It sits behind AnimeCache, which already shares one lookup between concurrent requests for the same id:
+ * what is left to batch are the misses for different ids, and only the misses pay for the window
+ */
+@Component
+public class AnimeBatchLoader implements MeterBinder {
+    private final AnimeRepository animeRepository;
+    private final Duration window;
+    private final int maxBatchSize;
+    private final Scheduler scheduler = Schedulers.parallel();
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicLong queries = new AtomicLong();
+
+    private final Object lock = new Object();
+    private Map<Integer, List<MonoSink<Anime>>> pending = new HashMap<>();//Guarded by lock
+    private Disposable scheduledFlush;//Guarded by lock
+
+    public AnimeBatchLoader(AnimeRepository animeRepository, AnimeProperties animeProperties) {
+        AnimeProperties.Lookup lookup = animeProperties.getLookup();
+        this.animeRepository = animeRepository;
+        this.window = lookup.getWindow();
+        this.maxBatchSize = lookup.getMaxBatchSize();
+    }
+
+    /**
+     * Empty when there is no anime with this id
+     */
+    public Mono<Anime> load(int id) {
+        if (window.isZero() || maxBatchSize <= 1) {
+            ids.incrementAndGet();
+            queries.incrementAndGet();
+            return animeRepository.findById(id);
+        }
+        return Mono.create(sink -> {
+            Map<Integer, List<MonoSink<Anime>>> full = null;
+            synchronized (lock) {
+                pending.computeIfAbsent(id, key -> new ArrayList<>(1)).add(sink);
+                if (pending.size() >= maxBatchSize) {
+                    full = takePending();
+                } else if (scheduledFlush == null) {
+                    scheduledFlush = scheduler.schedule(this::flush, window.toNanos(), TimeUnit.NANOSECONDS);
+                }
+            }
+            if (full != null) {
+                query(full);
+            }
+        });
+    }
+
+    private void flush() {
+        Map<Integer, List<MonoSink<Anime>>> batch;
+        synchronized (lock) {
+            scheduledFlush = null;
+            batch = takePending();
+        }
+        query(batch);
+    }
+
+    private Map<Integer, List<MonoSink<Anime>>> takePending() {
+        Map<Integer, List<MonoSink<Anime>>> batch = pending;
+        pending = new HashMap<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.dispose();
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void query(Map<Integer, List<MonoSink<Anime>>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        ids.addAndGet(batch.size());
+        queries.incrementAndGet();
+        animeRepository.findAllById(batch.keySet())
+                .collectMap(Anime::getId)
+                .subscribe(found -> batch.forEach((id, sinks) -> {
+                    Anime anime = found.get(id);
+                    for (MonoSink<Anime> sink : sinks) {
+                        if (anime == null) {
+                            sink.success();
+                        } else {
+                            sink.success(anime);
+                        }
+                    }
+                }), error -> batch.values().forEach(sinks -> sinks.forEach(sink -> sink.error(error))));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("anime.lookup.ids", ids, AtomicLong::get)
+                .description("Distinct ids looked up in the database by findById")
+                .register(registry);
+        FunctionCounter.builder("anime.lookup.queries", queries, AtomicLong::get)
+                .description("Queries made for them, ids/queries is the average batch size")
+                .register(registry);
+    }
+}
@@ -0,0 +1,148 @@
+package br.slamine.webflux.service;
+
+import br.slamine.webflux.config.AnimeProperties;
+import br.slamine.webflux.domain.Anime;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Read-through cache of animes by id. Caffeine keeps it bounded (W-TinyLFU eviction + TTL) and
+ * the async flavor never blocks the caller: concurrent misses for the same id share one database query.
+ * Ids known to be missing are remembered for a short time so repeated misses don't reach the database either.
+ * Hits, misses and evictions of both are exported as the cache.* meters, tagged cache=anime and cache=anime.missing
+ */
+@Component
+public class AnimeCache implements MeterBinder {
+    private final AsyncCache<Integer, Anime> cache;
+    private final Cache<Integer, Boolean> missing;
+    private final AtomicLong writes = new AtomicLong();
+
+    public AnimeCache(AnimeProperties animeProperties){
+        AnimeProperties.Cache properties = animeProperties.getCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .recordStats()
+                .buildAsync();
+        this.missing = Caffeine.newBuilder()
+                .maximumSize(properties.getMissingMaximumSize())
+                .expireAfterWrite(properties.getMissingTimeToLive())
+                .recordStats()
+                .build();
+    }
+
+    public Mono<Anime> get(int id, IntFunction<Mono<Anime>> loader){
+        return Mono.defer(() -> {
+            if(missing.getIfPresent(id) != null){
+                return Mono.empty();
+            }
+            long writesBeforeLoad = writes.get();
+            return Mono.fromFuture(load(id, loader))
+                    .switchIfEmpty(Mono.fromRunnable(() -> markMissing(id, writesBeforeLoad)));
+        });
+    }
+
+    /**
+     * The loader is subscribed only once its future is in the cache, not inside Caffeine's compute:
+     * a database driver may complete synchronously and run other requests' continuations (which write to this
+     * cache) on the same thread, and the map doesn't allow that while a compute is in progress
+     */
+    private CompletableFuture<Anime> load(int id, IntFunction<Mono<Anime>> loader){
+        CompletableFuture<Anime> cached = cache.getIfPresent(id);//Records the hit or miss, the map view doesn't
+        if(cached != null){
+            return cached;
+        }
+        CompletableFuture<Anime> future = new CompletableFuture<>();
+        CompletableFuture<Anime> existing = cache.asMap().putIfAbsent(id, future);
+        if(existing != null){
+            return existing;
+        }
+        //A future completing empty or with error is removed by Caffeine
+        loader.apply(id).subscribe(future::complete, future::completeExceptionally, () -> future.complete(null));
+        return future;
+    }
+
+    /**
+     * Same as get for many ids, but the ones neither cached nor known to be missing are loaded together:
+     * the loader gets all of them at once and returns the ones that exist
+     * @return the animes found, by id
+     */
+    public Mono<Map<Integer, Anime>> getAll(Collection<Integer> ids, Function<Set<Integer>, Flux<Anime>> loader){
+        return Mono.defer(() -> {
+            long writesBeforeLoad = writes.get();
+            Map<Integer, CompletableFuture<Anime>> futures = new HashMap<>();
+            Map<Integer, CompletableFuture<Anime>> loading = new HashMap<>();
+            for (Integer id : ids) {
+                if(missing.getIfPresent(id) != null || futures.containsKey(id)){
+                    continue;
+                }
+                CompletableFuture<Anime> future = cache.getIfPresent(id);
+                if(future == null){
+                    CompletableFuture<Anime> created = new CompletableFuture<>();
+                    future = cache.asMap().putIfAbsent(id, created);
+                    if(future == null){
+                        loading.put(id, created);
+                        future = created;
+                    }
+                }
+                futures.put(id, future);
+            }
+            if(!loading.isEmpty()){
+                //Subscribed outside of any cache computation, see load
+                loader.apply(loading.keySet())
+                        .collectMap(Anime::getId)
+                        .subscribe(found -> loading.forEach((id, future) -> future.complete(found.get(id))),
+                                error -> loading.values().forEach(future -> future.completeExceptionally(error)));
+            }
+            return Flux.fromIterable(futures.entrySet())
+                    .flatMap(entry -> Mono.fromFuture(entry.getValue())
+                            .switchIfEmpty(Mono.fromRunnable(() -> markMissing(entry.getKey(), writesBeforeLoad))))
+                    .collectMap(Anime::getId);
+        });
+    }
+
+    private void markMissing(int id, long writesBeforeLoad){
+        //A write during the load may have created this id, so the empty result can't be trusted
+        if(writes.get() == writesBeforeLoad){
+            missing.put(id, Boolean.TRUE);
+            //A write between the check and the put invalidated before the put, so it is undone here
+            if(writes.get() != writesBeforeLoad){
+                missing.invalidate(id);
+            }
+        }
+    }
+
+    public void put(Anime anime){
+        writes.incrementAndGet();
+        missing.invalidate(anime.getId());
+        cache.put(anime.getId(), CompletableFuture.completedFuture(anime));
+    }
+
+    public void invalidate(int id){
+        writes.incrementAndGet();
+        missing.invalidate(id);
+        cache.synchronous().invalidate(id);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry){
+        CaffeineCacheMetrics.monitor(registry, cache.synchronous(), "anime");
+        CaffeineCacheMetrics.monitor(registry, missing, "anime.missing");
+    }
+}
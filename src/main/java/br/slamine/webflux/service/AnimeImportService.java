@@ -0,0 +1,60 @@
+package br.slamine.webflux.service;
+
+import br.slamine.webflux.config.AnimeProperties;
+import br.slamine.webflux.domain.Anime;
+import br.slamine.webflux.domain.AnimeImportChunk;
+import br.slamine.webflux.repository.AnimeRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Imports an unbounded stream of animes: only one chunk is held in memory at a time and every chunk
+ * is committed in its own transaction, so a failure only rolls back the chunk being written
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnimeImportService {
+    private final AnimeRepository animeRepository;
+    private final AnimeCache animeCache;
+    private final AnimeSearchIndex animeSearchIndex;
+    private final AnimeProperties animeProperties;
+    private final TransactionalOperator transactionalOperator;
+
+    public Flux<AnimeImportChunk> importAll(Flux<Anime> animes) {
+        int chunkSize = animeProperties.getBatch().getChunkSize();
+        return Flux.defer(() -> {
+            AtomicLong totalInserted = new AtomicLong();
+            return animes.buffer(chunkSize)
+                    .index()
+                    .concatMap(chunk -> insertChunk(chunk.getT1(), chunk.getT2(), totalInserted), 1);//prefetch 1: no chunk waits in memory
+        });
+    }
+
+    private Mono<AnimeImportChunk> insertChunk(long index, List<Anime> chunk, AtomicLong totalInserted) {
+        return animeRepository.insertAll(Flux.fromIterable(chunk), chunk.size())
+                .collectList()
+                .as(transactionalOperator::transactional)
+                //Committed. Only now: a lookup during the transaction doesn't see the rows and may remember them as missing
+                .doOnNext(inserted -> {
+                    inserted.forEach(anime -> animeCache.invalidate(anime.getId()));
+                    animeSearchIndex.putAll(inserted);
+                })
+                .map(inserted -> AnimeImportChunk.builder()
+                        .chunk(index)
+                        .inserted(inserted.size())
+                        .totalInserted(totalInserted.addAndGet(inserted.size()))
+                        .firstId(inserted.isEmpty() ? null : inserted.get(0).getId())
+                        .lastId(inserted.isEmpty() ? null : inserted.get(inserted.size() - 1).getId())
+                        .build())
+                .doOnNext(result -> log.info("Imported chunk {} with {} animes ({} so far)",
+                        result.getChunk(), result.getInserted(), result.getTotalInserted()));
+    }
+}
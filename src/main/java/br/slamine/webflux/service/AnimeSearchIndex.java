@@ -0,0 +1,465 @@
+package br.slamine.webflux.service;
+
+import br.slamine.webflux.config.AnimeProperties;
+import br.slamine.webflux.domain.Anime;
+import br.slamine.webflux.repository.AnimeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index of trigrams of the anime names, so searching never reaches the database.
+ * Names are lower cased without accents and every word is indexed with two leading blanks: "naruto" gives
+ * "  n", " na", "nar", "aru", "rut", "uto". Query words of 3+ letters match anywhere in a word (all their
+ * trigrams), shorter ones only at the start of a word ("  n" or " na"), which is what autocomplete types.
+ * <p>
+ * Searches read published arrays without locking. Writes take a short lock and never copy a whole list: an added id
+ * goes to a small per-trigram delta and a removed one is left in place (searches check every candidate anyway), the
+ * list is only rewritten once enough of it changed.
+ * The index is built from findAll when the application is ready and rebuilt every "anime.search.rebuild-interval"
+ * to pick up what other nodes wrote, writes made here while it is rebuilt go to both indexes
+ */
+@Slf4j
+@Component
+public class AnimeSearchIndex implements ApplicationListener<ApplicationReadyEvent>, DisposableBean {
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final String WORD_START = "  ";
+    private static final long[] NO_GRAMS = new long[0];
+    private static final int MAX_DELTA = 256;//Changes a list takes before it is rewritten, so a write costs list/256
+
+    private final AnimeRepository animeRepository;
+    private final AnimeProperties animeProperties;
+    private final Object writeLock = new Object();
+    private volatile Index current = new Index(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    private Builder building;//Guarded by writeLock, null when no rebuild is running
+    private volatile boolean ready;
+    private volatile Disposable rebuilds;
+
+    public AnimeSearchIndex(AnimeRepository animeRepository, AnimeProperties animeProperties) {
+        this.animeRepository = animeRepository;
+        this.animeProperties = animeProperties;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        Duration interval = animeProperties.getSearch().getRebuildInterval();
+        Flux<Long> ticks = interval.isZero() ? Flux.just(0L) : Flux.interval(Duration.ZERO, interval).onBackpressureDrop();
+        rebuilds = ticks.concatMap(tick -> rebuild()
+                .onErrorResume(e -> {
+                    log.warn("Search index rebuild failed, the previous one is kept", e);
+                    return Mono.empty();
+                }), 1)
+                .subscribe();
+    }
+
+    @Override
+    public void destroy() {
+        Disposable rebuilds = this.rebuilds;
+        if (rebuilds != null) {
+            rebuilds.dispose();
+        }
+    }
+
+    /**
+     * Streams every anime into a new index and swaps it in once complete, searches keep using the current one meanwhile
+     * @return the number of indexed animes
+     */
+    public Mono<Integer> rebuild() {
+        return Mono.defer(() -> {
+            Builder builder = new Builder();
+            synchronized (writeLock) {
+                building = builder;
+            }
+            return animeRepository.findAll()
+                    .limitRate(animeProperties.getStream().getFetchSize())
+                    .map(Entry::of)
+                    .doOnNext(entry -> {
+                        synchronized (writeLock) {
+                            builder.load(entry);
+                        }
+                    })
+                    .then(Mono.fromSupplier(() -> {
+                        synchronized (writeLock) {
+                            current = builder.build();
+                            return current.entries.size();
+                        }
+                    }))
+                    .doFinally(signal -> {
+                        synchronized (writeLock) {
+                            if (building == builder) {
+                                building = null;
+                            }
+                        }
+                    })
+                    .doOnNext(size -> {
+                        ready = true;
+                        log.info("Search index built with {} animes", size);
+                    });
+        });
+    }
+
+    public void put(Anime anime) {
+        Entry entry = Entry.of(anime);
+        synchronized (writeLock) {
+            current.put(entry);
+            if (building != null) {
+                building.put(entry);
+            }
+        }
+    }
+
+    /**
+     * Same as put for each of them, under one lock
+     */
+    public void putAll(Collection<Anime> animes) {
+        List<Entry> entries = new ArrayList<>(animes.size());
+        for (Anime anime : animes) {
+            entries.add(Entry.of(anime));
+        }
+        synchronized (writeLock) {
+            for (Entry entry : entries) {
+                current.put(entry);
+                if (building != null) {
+                    building.put(entry);
+                }
+            }
+        }
+    }
+
+    public void remove(int id) {
+        synchronized (writeLock) {
+            current.remove(id);
+            if (building != null) {
+                building.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Animes whose name has every word of the query, best matches first: whole words, then word prefixes,
+     * then words containing it; names starting with the query, then shorter names win ties
+     */
+    public List<Anime> search(String query, int limit) {
+        String[] tokens = words(query);
+        if (tokens.length == 0 || limit <= 0) {
+            return List.of();
+        }
+        Index index = current;
+        List<Gram> lists = new ArrayList<>();
+        for (String token : tokens) {
+            for (long gram : queryGrams(token)) {
+                Gram ids = index.postings.get(gram);
+                if (ids == null) {
+                    return List.of();
+                }
+                lists.add(ids);
+            }
+        }
+        lists.sort(Comparator.comparingInt(ids -> ids.ids.length));
+        int[] candidates = lists.get(0).ids;
+        for (int i = 1; i < lists.size() && candidates.length > 0; i++) {
+            candidates = Postings.intersect(candidates, lists.get(i).ids);
+        }
+        //Recently added ids may miss from some lists only because they sit in their delta
+        for (Gram ids : lists) {
+            candidates = Postings.union(candidates, ids.added);
+        }
+
+        //The trigrams are all there but maybe not in the same word or order, so every candidate is checked
+        String text = String.join(" ", tokens);
+        PriorityQueue<Match> best = new PriorityQueue<>(Math.min(limit, candidates.length) + 1, Match.RANK.reversed());
+        for (int id : candidates) {
+            Entry entry = index.entries.get(id);
+            int score = entry == null ? 0 : score(entry, tokens, text);
+            if (score > 0) {
+                best.add(new Match(entry, score));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        Anime[] result = new Anime[best.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = best.poll().entry.anime;
+        }
+        return Arrays.asList(result);
+    }
+
+    public int size() {
+        return current.entries.size();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    private static int score(Entry entry, String[] tokens, String text) {
+        int score = entry.text.startsWith(text) ? 1 : 0;
+        for (String token : tokens) {
+            int tokenScore = 0;
+            for (String word : entry.words) {
+                if (word.equals(token)) {
+                    tokenScore = 3;
+                    break;
+                }
+                if (word.startsWith(token)) {
+                    tokenScore = 2;
+                } else if (tokenScore == 0 && token.length() >= 3 && word.contains(token)) {
+                    tokenScore = 1;
+                }
+            }
+            if (tokenScore == 0) {
+                return 0;
+            }
+            score += tokenScore;
+        }
+        return score;
+    }
+
+    private static String[] words(String text) {
+        String normalized = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        return Arrays.stream(SEPARATORS.split(normalized))
+                .filter(word -> !word.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    private static long[] queryGrams(String token) {
+        if (token.length() < 3) {
+            String padded = WORD_START + token;
+            return new long[]{gram(padded, padded.length() - 3)};
+        }
+        long[] grams = new long[token.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = gram(token, i);
+        }
+        return grams;
+    }
+
+    private static long[] indexGrams(String[] words) {
+        long[] grams = new long[Arrays.stream(words).mapToInt(String::length).sum()];
+        int size = 0;
+        for (String word : words) {
+            String padded = WORD_START + word;
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                grams[size++] = gram(padded, i);
+            }
+        }
+        return Arrays.stream(grams, 0, size).sorted().distinct().toArray();
+    }
+
+    private static long gram(String text, int from) {
+        return ((long) text.charAt(from) << 32) | ((long) text.charAt(from + 1) << 16) | text.charAt(from + 2);
+    }
+
+    private static final class Entry {
+        private final Anime anime;
+        private final String[] words;
+        private final String text;
+        private final long[] grams;
+
+        private Entry(Anime anime, String[] words) {
+            this.anime = anime;
+            this.words = words;
+            this.text = String.join(" ", words);
+            this.grams = indexGrams(words);
+        }
+
+        static Entry of(Anime anime) {
+            return new Entry(anime, words(anime.getName() == null ? "" : anime.getName()));
+        }
+
+        int id() {
+            return anime.getId();
+        }
+
+        //A rebuild reads a snapshot that may be older than a write made here meanwhile
+        boolean isNewerThan(Entry other) {
+            Long version = anime.getVersion();
+            Long otherVersion = other.anime.getVersion();
+            return version == null || otherVersion == null || version >= otherVersion;
+        }
+    }
+
+    /**
+     * The ids of one trigram: the list built at the last rewrite, which may still hold ids that lost the trigram
+     * since (stale), and the ones that got it since (added). Never changed, a write publishes a new one
+     */
+    private static final class Gram {
+        private final int[] ids;
+        private final int[] added;
+        private final int stale;
+
+        Gram(int[] ids, int[] added, int stale) {
+            this.ids = ids;
+            this.added = added;
+            this.stale = stale;
+        }
+
+        Gram with(int id) {
+            if (Arrays.binarySearch(ids, id) >= 0 || Arrays.binarySearch(added, id) >= 0) {
+                return this;
+            }
+            return new Gram(ids, Postings.with(added, id), stale);
+        }
+
+        Gram without(int id) {
+            if (Arrays.binarySearch(added, id) >= 0) {
+                return new Gram(ids, Postings.without(added, id), stale);
+            }
+            return new Gram(ids, added, stale + 1);
+        }
+
+        boolean needsRewrite() {
+            return added.length + stale > Math.min(MAX_DELTA, ids.length / 8 + 8);
+        }
+    }
+
+    private static final class Match {
+        static final Comparator<Match> RANK = Comparator.<Match>comparingInt(match -> -match.score)
+                .thenComparingInt(match -> match.entry.text.length())
+                .thenComparingInt(match -> match.entry.id());
+
+        private final Entry entry;
+        private final int score;
+
+        Match(Entry entry, int score) {
+            this.entry = entry;
+            this.score = score;
+        }
+    }
+
+    /**
+     * The published index: only written under writeLock, its lists are replaced, never changed
+     */
+    private static final class Index {
+        private final Map<Integer, Entry> entries;
+        private final Map<Long, Gram> postings;
+
+        Index(Map<Integer, Entry> entries, Map<Long, Gram> postings) {
+            this.entries = entries;
+            this.postings = postings;
+        }
+
+        void put(Entry entry) {
+            Entry previous = entries.put(entry.id(), entry);
+            long[] indexed = previous == null ? NO_GRAMS : previous.grams;
+            if (previous != null) {
+                removeGrams(previous.id(), previous.grams, entry.grams);
+            }
+            for (long gram : entry.grams) {
+                if (Arrays.binarySearch(indexed, gram) < 0) {
+                    Gram ids = postings.get(gram);
+                    publish(gram, ids == null ? new Gram(Postings.EMPTY, new int[]{entry.id()}, 0) : ids.with(entry.id()));
+                }
+            }
+        }
+
+        void remove(int id) {
+            Entry previous = entries.remove(id);
+            if (previous != null) {
+                removeGrams(id, previous.grams, NO_GRAMS);
+            }
+        }
+
+        private void removeGrams(int id, long[] grams, long[] kept) {
+            for (long gram : grams) {
+                if (Arrays.binarySearch(kept, gram) < 0) {
+                    Gram ids = postings.get(gram);
+                    if (ids != null) {
+                        publish(gram, ids.without(id));
+                    }
+                }
+            }
+        }
+
+        private void publish(long gram, Gram ids) {
+            if (ids.needsRewrite()) {
+                ids = rewrite(gram, ids);
+            }
+            if (ids.ids.length == 0 && ids.added.length == 0) {
+                postings.remove(gram);
+            } else {
+                postings.put(gram, ids);
+            }
+        }
+
+        //Merges the delta in and drops the stale ids: the ones whose current name doesn't have the trigram anymore
+        private Gram rewrite(long gram, Gram ids) {
+            int[] merged = Postings.union(ids.ids, ids.added);
+            int size = 0;
+            for (int id : merged) {
+                Entry entry = entries.get(id);
+                if (entry != null && Arrays.binarySearch(entry.grams, gram) >= 0) {
+                    merged[size++] = id;
+                }
+            }
+            return new Gram(size == 0 ? Postings.EMPTY : Arrays.copyOf(merged, size), Postings.EMPTY, 0);
+        }
+    }
+
+    /**
+     * The index being rebuilt, nobody searches it yet so its lists are changed in place.
+     * Only used under writeLock
+     */
+    private static final class Builder {
+        private final Map<Integer, Entry> entries = new HashMap<>();
+        private final Map<Long, Postings> postings = new HashMap<>();
+        private final Set<Integer> removed = new HashSet<>();
+
+        //From findAll: ignored if it was written or removed here since the rebuild started
+        void load(Entry entry) {
+            Entry existing = entries.get(entry.id());
+            if (removed.contains(entry.id()) || (existing != null && existing.isNewerThan(entry))) {
+                return;
+            }
+            put(entry);
+        }
+
+        void put(Entry entry) {
+            removed.remove(entry.id());
+            Entry previous = entries.put(entry.id(), entry);
+            if (previous != null) {
+                for (long gram : previous.grams) {
+                    postings.get(gram).remove(entry.id());
+                }
+            }
+            for (long gram : entry.grams) {
+                postings.computeIfAbsent(gram, key -> new Postings()).add(entry.id());
+            }
+        }
+
+        void remove(int id) {
+            removed.add(id);
+            Entry previous = entries.remove(id);
+            if (previous != null) {
+                for (long gram : previous.grams) {
+                    postings.get(gram).remove(id);
+                }
+            }
+        }
+
+        Index build() {
+            Map<Long, Gram> published = new ConcurrentHashMap<>(postings.size() * 4 / 3 + 1);
+            postings.forEach((gram, ids) -> {
+                int[] array = ids.toArray();
+                if (array.length > 0) {
+                    published.put(gram, new Gram(array, Postings.EMPTY, 0));
+                }
+            });
+            return new Index(new ConcurrentHashMap<>(entries), published);
+        }
+    }
+}
@@ -1,62 +1,203 @@
 package br.slamine.webflux.service;
 
+import br.slamine.webflux.config.AnimeProperties;
 import br.slamine.webflux.domain.Anime;
+import br.slamine.webflux.domain.AnimeLookup;
+import br.slamine.webflux.domain.AnimePage;
+import br.slamine.webflux.domain.AnimePageVersion;
+import br.slamine.webflux.exception.AnimeNotFoundException;
+import br.slamine.webflux.exception.AnimeVersionConflictException;
 import br.slamine.webflux.repository.AnimeRepository;
 import io.netty.util.internal.StringUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import org.springframework.util.StringUtils;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AnimeService {
+    private static final Mono<?> ANIME_NOT_FOUND = Mono.error(AnimeNotFoundException::new);
 
     private final AnimeRepository animeRepository;
+    private final AnimeProperties animeProperties;
+    private final AnimeCache animeCache;
+    private final AnimeSearchIndex animeSearchIndex;
+    private final AnimeBatchLoader animeBatchLoader;
+    private final TransactionalOperator transactionalOperator;
 
     public Flux<Anime> findAll() {
-        return animeRepository.findAll();
+        return animeRepository.findAll()
+                .limitRate(animeProperties.getStream().getFetchSize());//Client demand drives the cursor, in bounded batches
+    }
+
+    /**
+     * Keyset pagination: reads at most one page (plus one row to know if there is a next page)
+     * ordered by id, so the cost doesn't depend on how far the client is in the listing
+     */
+    public Mono<AnimePage> findPage(int after, Integer limit) {
+        int pageSize = pageSize(limit);
+        return animeRepository.findPage(after, pageSize + 1)
+                .collectList()
+                .map(animes -> toPage(animes, pageSize));
+    }
+
+    /**
+     * Changes whenever findPage(after, limit) would return something else, at the cost of an aggregate
+     * over the same rows: lets the controller answer 304 without reading and serializing the page
+     */
+    public Mono<AnimePageVersion> findPageVersion(int after, Integer limit) {
+        return animeRepository.findPageVersion(after, pageSize(limit) + 1);
+    }
+
+    private int pageSize(Integer limit){
+        AnimeProperties.Page page = animeProperties.getPage();
+        if(limit == null){
+            return page.getDefaultSize();
+        }
+        return Math.max(1, Math.min(limit, page.getMaxSize()));
+    }
+
+    private AnimePage toPage(List<Anime> animes, int pageSize){
+        if(animes.size() <= pageSize){
+            return new AnimePage(animes, null);
+        }
+        List<Anime> content = animes.subList(0, pageSize);
+        return new AnimePage(content, content.get(pageSize - 1).getId());
+    }
+
+    /**
+     * Served from the in-memory name index, never from the database
+     */
+    public Flux<Anime> search(String query, Integer limit) {
+        AnimeProperties.Search search = animeProperties.getSearch();
+        int size = limit == null ? search.getDefaultLimit() : Math.max(1, Math.min(limit, search.getMaxLimit()));
+        return Flux.defer(() -> Flux.fromIterable(animeSearchIndex.search(query, size)));
     }
 
     public Mono<Anime> findById(int id){
-        return animeRepository.findById(id)
+        return animeCache.get(id, animeBatchLoader::load)
                 .switchIfEmpty(monoResponseStatusNotFound())
                 //.log()
                 ;
     }
 
+    /**
+     * The animes with these ids in the order they were asked (repeated ids only once), with a 404 in place
+     * of the missing ones. Cached animes are not read again, the others are read with one query per
+     * "anime.lookup.max-batch-size" ids, and each batch is sent as soon as it is read
+     */
+    public Flux<AnimeLookup> findAllById(List<Integer> ids) {
+        AnimeProperties.Lookup lookup = animeProperties.getLookup();
+        if(ids.size() > lookup.getMaxIds()){
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + lookup.getMaxIds() + " ids can be asked at once"));
+        }
+        return Flux.fromIterable(new LinkedHashSet<>(ids))
+                .buffer(Math.max(1, lookup.getMaxBatchSize()))
+                .concatMap(batch -> animeCache.getAll(batch, animeRepository::findAllById)
+                        .flatMapIterable(found -> batch.stream()
+                                .map(id -> found.containsKey(id)
+                                        ? new AnimeLookup(id, HttpStatus.OK.value(), found.get(id))
+                                        : new AnimeLookup(id, HttpStatus.NOT_FOUND.value(), null))
+                                .collect(Collectors.toList())), 1);
+    }
+
+    @SuppressWarnings("unchecked")
     public <T> Mono<T> monoResponseStatusNotFound(){
-        return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Anime not found"));
+        return (Mono<T>) ANIME_NOT_FOUND;
     }
 
+    /**
+     * Always an insert: Spring Data would UPDATE an anime with an id and check its version, so a client sending either
+     * could overwrite another anime or get a version failure instead of a created anime
+     */
     public Mono<Anime> save(Anime anime) {
-        return animeRepository.save(anime);
+        return animeRepository.save(anime.withId(null).withVersion(null).withUpdatedAt(now()))
+                .doOnNext(this::cacheAndIndex);
     }
 
     public Mono<?> update(Anime anime) {
-        return findById(anime.getId())
-                .map(animeFound -> anime.withId(animeFound.getId()))
-                .flatMap(animeRepository::save)
-                .then();//or you can just return then()
+        return update(anime, HttpStatus.CONFLICT);
+    }
+
+    /**
+     * Without a version the last write wins. With a version the update only applies if it is still the current one,
+     * otherwise it fails with conflictStatus (or not found when the anime doesn't exist anymore)
+     */
+    public Mono<?> update(Anime anime, HttpStatus conflictStatus) {
+        if(anime.getVersion() == null){
+            return animeRepository.updateName(anime.getId(), anime.getName(), now())//One statement: no read before the write
+                    .switchIfEmpty(monoResponseStatusNotFound())
+                    .doOnNext(this::cacheAndIndex)
+                    .then();//or you can just return then()
+        }
+        return animeRepository.updateNameIfVersion(anime.getId(), anime.getName(), now(), anime.getVersion())
+                .switchIfEmpty(versionConflictOrNotFound(anime.getId(), conflictStatus))
+                .doOnNext(this::cacheAndIndex)
+                .then();
+    }
+
+    //Only read when the update didn't apply, to tell the two failures apart
+    private Mono<Anime> versionConflictOrNotFound(int id, HttpStatus conflictStatus){
+        return animeRepository.existsById(id)
+                .flatMap(exists -> {
+                    if(!exists){
+                        return monoResponseStatusNotFound();
+                    }
+                    animeCache.invalidate(id);//The cached copy may be the outdated one the client read
+                    return Mono.error(new AnimeVersionConflictException(conflictStatus));
+                });
     }
 
     public Mono<?> delete(int id) {
-        return findById(id)
-                .flatMap(animeRepository::delete);
+        return animeRepository.deleteAnime(id)
+                .filter(deletedRows -> deletedRows > 0)
+                .switchIfEmpty(monoResponseStatusNotFound())
+                .doOnNext(deletedRows -> {
+                    animeCache.invalidate(id);
+                    animeSearchIndex.remove(id);
+                })
+                .then();
     }
 
-    @Transactional
+    /**
+     * All or nothing, so nothing is emitted before the commit: an anime returned or indexed before it could still be
+     * rolled back by a later failure, the commit itself or the client going away
+     */
     public Flux<Anime> saveAll(List<Anime> animes) {
-        return animeRepository.saveAll(animes)
+        Flux<Anime> validAnimes = Flux.fromIterable(animes)
                 .doOnNext(this::throwResponseStatusExceptionWhenEmptyName);
+        return animeRepository.insertAll(validAnimes, animeProperties.getBatch().getChunkSize())
+                .collectList()
+                .as(transactionalOperator::transactional)
+                //Committed. Only now: a lookup during the transaction doesn't see the rows and may remember them as missing
+                .doOnNext(inserted -> {
+                    inserted.forEach(anime -> animeCache.invalidate(anime.getId()));
+                    animeSearchIndex.putAll(inserted);
+                })
+                .flatMapIterable(inserted -> inserted);
+    }
+
+    private void cacheAndIndex(Anime anime){
+        animeCache.put(anime);
+        animeSearchIndex.put(anime);
+    }
+
+    private static Instant now(){
+        return Instant.now().truncatedTo(ChronoUnit.MICROS);//The database precision, so the cached anime matches the row
     }
 
     private void throwResponseStatusExceptionWhenEmptyName(Anime anime){
@@ -1,20 +1,70 @@
 package br.slamine.webflux.service;
 
+import br.slamine.webflux.config.AuthProperties;
+import br.slamine.webflux.domain.MyUser;
 import br.slamine.webflux.repository.MyUserRepository;
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
-@RequiredArgsConstructor
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Users are looked up on every authenticated request, so they are kept in a bounded cache with a short TTL:
+ * users are changed directly in the database. A failed password check evicts the user (see
+ * CachingReactiveAuthenticationManager), so a new password works on the next attempt instead of after the TTL.
+ * Unknown usernames are not cached: a failed lookup always reaches the database
+ */
 @Service
 public class MyUserDetailsService implements ReactiveUserDetailsService {
     private final MyUserRepository userRepository;
+    private final AsyncCache<String, UserDetails> users;
+
+    public MyUserDetailsService(MyUserRepository userRepository, AuthProperties authProperties) {
+        AuthProperties.UserCache properties = authProperties.getUserCache();
+        this.userRepository = userRepository;
+        this.users = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .buildAsync();
+    }
 
+    /**
+     * The repository is subscribed once its future is in the cache, not inside Caffeine's compute, see AnimeCache
+     */
     @Override
     public Mono<UserDetails> findByUsername(String username) {
-        return userRepository.findByUsername(username)
-                .cast(UserDetails.class);
+        return Mono.defer(() -> {
+            CompletableFuture<UserDetails> cached = users.getIfPresent(username);
+            if (cached != null) {
+                return Mono.fromFuture(cached);
+            }
+            CompletableFuture<UserDetails> future = new CompletableFuture<>();
+            CompletableFuture<UserDetails> existing = users.asMap().putIfAbsent(username, future);
+            if (existing != null) {
+                return Mono.fromFuture(existing);
+            }
+            //A future completing empty or with error is removed by Caffeine
+            userRepository.findByUsername(username)
+                    .map(MyUserDetailsService::toUserDetails)
+                    .subscribe(future::complete, future::completeExceptionally, () -> future.complete(null));
+            return Mono.fromFuture(future);
+        });
+    }
+
+    /**
+     * Must be called when a user may have changed so the next request reads it again
+     */
+    public void evict(String username) {
+        users.synchronous().invalidate(username);
+    }
+
+    //MyUser parses its authorities on every call: they are parsed once per load here and the cached user is immutable
+    private static UserDetails toUserDetails(MyUser user) {
+        return User.withUserDetails(user).build();
     }
 }
@@ -0,0 +1,99 @@
+package br.slamine.webflux.codec;
+
+import br.slamine.webflux.config.WebFluxCodecConfig;
+import br.slamine.webflux.domain.Anime;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.EncoderHttpMessageWriter;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+public class AnimeJsonEncoderTest {
+
+    private static final ResolvableType ANIME = ResolvableType.forClass(Anime.class);
+
+    //Configured like the one Spring Boot creates
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private final AnimeJsonEncoder encoder = new AnimeJsonEncoder();
+
+    private final List<Anime> animes = List.of(
+            Anime.builder().id(1).name("Naruto").build(),
+            Anime.builder().build(),
+            Anime.builder().id(Integer.MAX_VALUE).name("Shingeki no Kyojin \"Attack\" \\ on\tTitan\n\u0001\u007f").version(0L).build(),
+            Anime.builder().id(-7).name("Pokémon 魔法少女 🌸 \uD800 end").version(Long.MAX_VALUE)
+                    .updatedAt(Instant.parse("2020-07-01T10:15:30Z")).build(),
+            Anime.builder().id(3).name("").updatedAt(Instant.parse("1969-12-31T23:59:59.120Z")).build(),
+            Anime.builder().id(4).name("Slime").updatedAt(Instant.parse("2024-02-29T00:00:00.123456Z")).build(),
+            Anime.builder().id(5).name("Slime").updatedAt(Instant.parse("0001-01-01T00:00:00.000000001Z")).build());
+
+    @Test
+    @DisplayName("encodeValue writes the same json as the ObjectMapper")
+    public void encodeValue_WritesObjectMapperJson_WhenSuccessful() throws Exception {
+        for (Anime anime : animes) {
+            DataBuffer buffer = encoder.encodeValue(anime, new DefaultDataBufferFactory(), ANIME, MediaType.APPLICATION_JSON, Map.of());
+
+            String expected = anime.getName() != null && anime.getName().contains("\uD800")
+                    ? objectMapper.writeValueAsString(anime.withName(anime.getName().replace('\uD800', '?')))
+                    : objectMapper.writeValueAsString(anime);
+            Assertions.assertEquals(expected, toString(buffer));
+        }
+    }
+
+    @Test
+    @DisplayName("encode writes a json array, or one json document per line for ndjson")
+    public void encode_WritesArrayOrLines_DependingOnMediaType() throws Exception {
+        List<Anime> animes = this.animes.subList(0, 3);
+
+        String array = DataBufferUtils.join(encoder.encode(Flux.fromIterable(animes), new DefaultDataBufferFactory(),
+                ANIME, MediaType.APPLICATION_JSON, Map.of())).map(this::toString).block();
+        String lines = DataBufferUtils.join(encoder.encode(Flux.fromIterable(animes), new DefaultDataBufferFactory(),
+                ANIME, CodecMediaTypes.APPLICATION_NDJSON, Map.of())).map(this::toString).block();
+        String empty = DataBufferUtils.join(encoder.encode(Flux.empty(), new DefaultDataBufferFactory(),
+                ANIME, MediaType.APPLICATION_JSON, Map.of())).map(this::toString).block();
+
+        Assertions.assertEquals(objectMapper.writeValueAsString(animes), array);
+        Assertions.assertEquals(objectMapper.writeValueAsString(animes.get(0)) + "\n"
+                + objectMapper.writeValueAsString(animes.get(1)) + "\n"
+                + objectMapper.writeValueAsString(animes.get(2)) + "\n", lines);
+        Assertions.assertEquals("[]", empty);
+    }
+
+    @Test
+    @DisplayName("configureHttpMessageCodecs puts the anime encoder before Jackson")
+    public void configureHttpMessageCodecs_PutsAnimeEncoderBeforeJackson(){
+        ServerCodecConfigurer configurer = ServerCodecConfigurer.create();
+        new WebFluxCodecConfig(objectMapper, encoder).configureHttpMessageCodecs(configurer);
+
+        HttpMessageWriter<?> writer = configurer.getWriters().stream()
+                .filter(candidate -> candidate.canWrite(ANIME, MediaType.APPLICATION_JSON))
+                .findFirst()
+                .orElseThrow();
+
+        Assertions.assertTrue(writer instanceof EncoderHttpMessageWriter);
+        Assertions.assertSame(encoder, ((EncoderHttpMessageWriter<?>) writer).getEncoder());
+    }
+
+    private String toString(DataBuffer buffer){
+        String value = buffer.toString(StandardCharsets.UTF_8);
+        DataBufferUtils.release(buffer);
+        return value;
+    }
+}
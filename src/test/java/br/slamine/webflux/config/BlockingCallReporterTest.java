@@ -0,0 +1,58 @@
+package br.slamine.webflux.config;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.blockhound.BlockingMethod;
+
+import java.lang.reflect.Modifier;
+
+public class BlockingCallReporterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    public void setup(){
+        Metrics.addRegistry(meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown(){
+        Metrics.removeRegistry(meterRegistry);
+    }
+
+    @Test
+    @DisplayName("report counts every blocking call per method without throwing")
+    public void report_CountsEveryBlockingCall_WhenCalled(){
+        BlockingCallReporter reporter = new BlockingCallReporter(1);
+        BlockingMethod sleep = new BlockingMethod("java.lang.Thread", "sleep", Modifier.STATIC);
+
+        for (int i = 0; i < 5; i++) {
+            reporter.report(sleep);
+        }
+
+        Assertions.assertEquals(5, meterRegistry.get("blockhound.blocking.calls")
+                .tag("method", "java.lang.Thread.sleep")
+                .counter()
+                .count());
+    }
+
+    @Test
+    @DisplayName("report only counts blocking calls when no stack trace may be logged")
+    public void report_CountsWithoutLogging_WhenMaxLogsPerMinuteIsZero(){
+        BlockingCallReporter reporter = new BlockingCallReporter(0);
+        BlockingMethod sleep = new BlockingMethod("java.lang.Thread", "sleep", Modifier.STATIC);
+
+        reporter.report(sleep);
+
+        Assertions.assertEquals(1, meterRegistry.get("blockhound.blocking.calls")
+                .tag("method", "java.lang.Thread.sleep")
+                .counter()
+                .count());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new BlockingCallReporter(-1));
+    }
+}
@@ -1,6 +1,15 @@
 package br.slamine.webflux.controller;
 
+import br.slamine.webflux.codec.AnimeJsonEncoder;
+import br.slamine.webflux.codec.CodecMediaTypes;
+import br.slamine.webflux.config.AnimeProperties;
 import br.slamine.webflux.domain.Anime;
+import br.slamine.webflux.domain.AnimeImportChunk;
+import br.slamine.webflux.domain.AnimePage;
+import br.slamine.webflux.domain.AnimePageVersion;
+import br.slamine.webflux.exception.AnimeNotFoundException;
+import br.slamine.webflux.exception.AnimeVersionConflictException;
+import br.slamine.webflux.service.AnimeImportService;
 import br.slamine.webflux.service.AnimeService;
 import br.slamine.webflux.util.AnimeCreator;
 import org.junit.jupiter.api.*;
@@ -9,6 +18,13 @@ import org.mockito.ArgumentMatchers;
 import org.mockito.BDDMockito;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.mock.web.server.MockServerWebExchange;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import reactor.blockhound.BlockHound;
 import reactor.blockhound.BlockingOperationError;
@@ -17,6 +33,7 @@ import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
@@ -29,6 +46,14 @@ public class AnimeControllerTest {
     @Mock
     private AnimeService animeServiceMock;
 
+    @Mock
+    private AnimeImportService animeImportServiceMock;
+
+    @Spy
+    private AnimeStreamWriter animeStreamWriter = new AnimeStreamWriter(new AnimeJsonEncoder(), new AnimeProperties());
+
+    private static final Instant UPDATED_AT = Instant.parse("2020-07-01T10:15:30.123456Z");
+
     private final Anime anime = AnimeCreator.createValidAnime();
 
     @BeforeAll
@@ -39,7 +64,13 @@ public class AnimeControllerTest {
     @BeforeEach
     public void setup(){
         BDDMockito.when(animeServiceMock.findAll())
-                .thenReturn(Flux.just(anime));
+                .thenReturn(Flux.just(anime, anime.withId(2)));
+
+        BDDMockito.when(animeServiceMock.findPageVersion(ArgumentMatchers.anyInt(), ArgumentMatchers.any()))
+                .thenReturn(Mono.just(new AnimePageVersion(1, anime.getId(), UPDATED_AT)));
+
+        BDDMockito.when(animeServiceMock.findPage(ArgumentMatchers.anyInt(), ArgumentMatchers.any()))
+                .thenReturn(Mono.just(new AnimePage(List.of(anime), null)));
 
         BDDMockito.when(animeServiceMock.findById(ArgumentMatchers.anyInt()))
                 .thenReturn(Mono.just(anime));
@@ -51,6 +82,9 @@ public class AnimeControllerTest {
                 List.of(AnimeCreator.createAnimeToBeSaved(), AnimeCreator.createAnimeToBeSaved())))
                 .thenReturn(Flux.just(anime, anime));
 
+        BDDMockito.when(animeImportServiceMock.importAll(ArgumentMatchers.any()))
+                .thenReturn(Flux.just(new AnimeImportChunk(0, 2, 2, 1, 2)));
+
         BDDMockito.when(animeServiceMock.delete(ArgumentMatchers.anyInt()))
                 .thenReturn(Mono.empty());
 
@@ -74,12 +108,62 @@ public class AnimeControllerTest {
     }
 
     @Test
-    @DisplayName("find All returns a flux of anime")
-    public void findAll_ReturnFluxOfAnime_WhenSuccessful(){
+    @DisplayName("listAll returns a page of anime")
+    public void listAll_ReturnPageOfAnime_WhenSuccessful(){
 
-        StepVerifier.create(animeController.listAll())
+        StepVerifier.create(animeController.listAll(0, null, MockServerWebExchange.from(MockServerHttpRequest.get("/animes"))))
+                .expectSubscription()
+                .expectNextMatches(response -> response.getStatusCode() == HttpStatus.OK
+                        && response.getHeaders().getETag() != null
+                        && new AnimePage(List.of(anime), null).equals(response.getBody()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("listAll returns not modified without reading the page when the ETag matches")
+    public void listAll_ReturnNotModified_WhenETagMatches(){
+        String etag = animeController.listAll(0, null, MockServerWebExchange.from(MockServerHttpRequest.get("/animes")))
+                .block()
+                .getHeaders()
+                .getETag();
+        BDDMockito.clearInvocations(animeServiceMock);
+
+        StepVerifier.create(animeController.listAll(0, null,
+                MockServerWebExchange.from(MockServerHttpRequest.get("/animes").ifNoneMatch(etag))))
+                .expectSubscription()
+                .expectNextMatches(response -> response.getStatusCode() == HttpStatus.NOT_MODIFIED && response.getBody() == null)
+                .verifyComplete();
+
+        BDDMockito.verify(animeServiceMock, BDDMockito.never()).findPage(ArgumentMatchers.anyInt(), ArgumentMatchers.any());
+    }
+
+    @Test
+    @DisplayName("streamAll writes one json document per line")
+    public void streamAll_WriteNdjson_WhenSuccessful(){
+        MockServerHttpResponse response = new MockServerHttpResponse();
+
+        StepVerifier.create(animeController.streamAll(response))
                 .expectSubscription()
-                .expectNext(anime)
+                .verifyComplete();
+
+        Assertions.assertEquals(CodecMediaTypes.APPLICATION_NDJSON, response.getHeaders().getContentType());
+        StepVerifier.create(response.getBodyAsString())
+                .expectNext("{\"id\":1,\"name\":\"South Park\"}\n{\"id\":2,\"name\":\"South Park\"}\n")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("streamAllEvents writes one server-sent event per anime")
+    public void streamAllEvents_WriteServerSentEvents_WhenSuccessful(){
+        MockServerHttpResponse response = new MockServerHttpResponse();
+
+        StepVerifier.create(animeController.streamAllEvents(response))
+                .expectSubscription()
+                .verifyComplete();
+
+        Assertions.assertEquals(MediaType.TEXT_EVENT_STREAM, response.getHeaders().getContentType());
+        StepVerifier.create(response.getBodyAsString())
+                .expectNext("id:1\ndata:{\"id\":1,\"name\":\"South Park\"}\n\nid:2\ndata:{\"id\":2,\"name\":\"South Park\"}\n\n")
                 .verifyComplete();
     }
 
@@ -89,7 +173,20 @@ public class AnimeControllerTest {
 
         StepVerifier.create(animeController.findById(1))
                 .expectSubscription()
-                .expectNext(anime)
+                .expectNext(ResponseEntity.ok(anime))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("find by id returns ETag and Last-Modified from the anime version and updatedAt")
+    public void findById_ReturnValidators_WhenAnimeHasUpdatedAt(){
+        BDDMockito.when(animeServiceMock.findById(1))
+                .thenReturn(Mono.just(anime.withUpdatedAt(UPDATED_AT).withVersion(3L)));
+
+        StepVerifier.create(animeController.findById(1))
+                .expectSubscription()
+                .expectNextMatches(response -> "\"1-3\"".equals(response.getHeaders().getETag())
+                        && response.getHeaders().getLastModified() == UPDATED_AT.getEpochSecond() * 1000)
                 .verifyComplete();
     }
 
@@ -113,6 +210,16 @@ public class AnimeControllerTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("importAll reports the imported chunks when successful")
+    public void importAll_ReportImportedChunks_WhenSuccessful(){
+        Anime animeTobeSaved = AnimeCreator.createAnimeToBeSaved();
+        StepVerifier.create(animeController.importAll(Flux.just(animeTobeSaved, animeTobeSaved)))
+                .expectSubscription()
+                .expectNext(new AnimeImportChunk(0, 2, 2, 1, 2))
+                .verifyComplete();
+    }
+
     @Test
     @DisplayName("delete remove the anime when successful")
     public void delete_RemoveAnime_WhenSuccessful(){
@@ -124,11 +231,59 @@ public class AnimeControllerTest {
     @Test
     @DisplayName("update save updated anime and returns empty Mono when successful")
     public void update_SaveUpdatedAnime_WhenSuccessful(){
-        StepVerifier.create(animeController.update(1, AnimeCreator.createValidAnime()))
+        StepVerifier.create(animeController.update(1, AnimeCreator.createValidAnime(), null))
                 .expectSubscription()
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("update checks the version from If-Match and fails with precondition failed on conflict")
+    public void update_CheckIfMatchVersion_WhenIfMatchIsSent(){
+        Anime anime = AnimeCreator.createValidAnime();
+        BDDMockito.when(animeServiceMock.update(anime.withVersion(3L), HttpStatus.PRECONDITION_FAILED))
+                .thenReturn(Mono.empty());
+
+        StepVerifier.create(animeController.update(1, anime, "\"1-3\""))
+                .expectSubscription()
+                .verifyComplete();
+
+        StepVerifier.create(animeController.update(1, anime, "W/\"1-3\""))
+                .expectSubscription()
+                .expectErrorMatches(e -> e instanceof AnimeVersionConflictException
+                        && ((AnimeVersionConflictException) e).getStatus() == HttpStatus.PRECONDITION_FAILED)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("update accepts any of the ETags listed in If-Match")
+    public void update_AcceptAnyListedVersion_WhenIfMatchListsSeveralETags(){
+        Anime anime = AnimeCreator.createValidAnime();
+        BDDMockito.when(animeServiceMock.update(anime.withVersion(3L), HttpStatus.PRECONDITION_FAILED))
+                .thenReturn(Mono.error(new AnimeVersionConflictException(HttpStatus.PRECONDITION_FAILED)));
+        BDDMockito.when(animeServiceMock.update(anime.withVersion(2L), HttpStatus.PRECONDITION_FAILED))
+                .thenReturn(Mono.empty());
+
+        StepVerifier.create(animeController.update(1, anime, "\"1-2\", W/\"1-4\",\"1-3\""))
+                .expectSubscription()
+                .verifyComplete();
+
+        BDDMockito.verify(animeServiceMock).update(anime.withVersion(2L), HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @Test
+    @DisplayName("update fails with precondition failed instead of not found when If-Match is sent for a missing anime")
+    public void update_ReturnPreconditionFailed_WhenIfMatchIsSentForMissingAnime(){
+        Anime anime = AnimeCreator.createValidAnime();
+        BDDMockito.when(animeServiceMock.update(anime.withVersion(null), HttpStatus.PRECONDITION_FAILED))
+                .thenReturn(Mono.error(new AnimeNotFoundException()));
+
+        StepVerifier.create(animeController.update(1, anime, "*"))
+                .expectSubscription()
+                .expectErrorMatches(e -> e instanceof AnimeVersionConflictException
+                        && ((AnimeVersionConflictException) e).getStatus() == HttpStatus.PRECONDITION_FAILED)
+                .verify();
+    }
+
     /**
      * Error cases cannot be tested because these behaviors is handled by service tier
      * so we can assume that <<This test should be done in Integration Test>>
@@ -0,0 +1,29 @@
+package br.slamine.webflux.exception;
+
+import io.r2dbc.spi.R2dbcTimeoutException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import reactor.pool.PoolAcquirePendingLimitException;
+
+import java.util.concurrent.TimeoutException;
+
+public class CustomAttributesTest {
+
+    @Test
+    @DisplayName("isConnectionPoolSaturated returns true when no connection could be acquired in time or the queue is full")
+    public void isConnectionPoolSaturated_ReturnsTrue_WhenAcquireTimesOutOrQueueIsFull(){
+        Assertions.assertTrue(CustomAttributes.isConnectionPoolSaturated(new DataAccessResourceFailureException(
+                "Failed to obtain R2DBC Connection", new PoolAcquirePendingLimitException(200))));
+        Assertions.assertTrue(CustomAttributes.isConnectionPoolSaturated(new DataAccessResourceFailureException(
+                "Failed to obtain R2DBC Connection", new R2dbcTimeoutException("Connection acquisition timed out", new TimeoutException()))));
+    }
+
+    @Test
+    @DisplayName("isConnectionPoolSaturated returns false when the error is not related to the connection pool")
+    public void isConnectionPoolSaturated_ReturnsFalse_WhenErrorIsUnrelated(){
+        Assertions.assertFalse(CustomAttributes.isConnectionPoolSaturated(new IllegalStateException("Boom")));
+        Assertions.assertFalse(CustomAttributes.isConnectionPoolSaturated(new R2dbcTimeoutException("Statement cancelled")));
+    }
+}
@@ -0,0 +1,60 @@
+package br.slamine.webflux.exception;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.web.ResourceProperties;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+public class GlobalExceptionHandlerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private GlobalExceptionHandler globalExceptionHandler;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        globalExceptionHandler = new GlobalExceptionHandler(new CustomAttributes(), new ResourceProperties(),
+                new StaticApplicationContext(), ServerCodecConfigurer.create());
+        globalExceptionHandler.afterPropertiesSet();
+    }
+
+    @Test
+    @DisplayName("handle writes the pre-encoded body when a ResponseStatusException has a client error status")
+    public void handle_WritesPreEncodedBody_WhenResponseStatusExceptionIsClientError() throws Exception {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/animes/\"42\""));
+
+        globalExceptionHandler.handle(exchange, new AnimeNotFoundException()).block();
+
+        JsonNode body = objectMapper.readTree(exchange.getResponse().getBodyAsString().block());
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, exchange.getResponse().getStatusCode());
+        Assertions.assertEquals(MediaType.APPLICATION_JSON, exchange.getResponse().getHeaders().getContentType());
+        Assertions.assertEquals(404, body.get("status").asInt());
+        Assertions.assertEquals("Not Found", body.get("error").asText());
+        Assertions.assertEquals(new AnimeNotFoundException().getMessage(), body.get("message").asText());
+        Assertions.assertEquals("A ResponseStatusException Happened", body.get("developerMessage").asText());
+        Assertions.assertEquals("/animes/%2242%22", body.get("path").asText());
+    }
+
+    @Test
+    @DisplayName("handle builds the full error attributes when the trace is requested")
+    public void handle_BuildsFullErrorAttributes_WhenTraceIsRequested() throws Exception {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/animes/42?trace=true"));
+
+        globalExceptionHandler.handle(exchange, new AnimeNotFoundException()).block();
+
+        JsonNode body = objectMapper.readTree(exchange.getResponse().getBodyAsString().block());
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, exchange.getResponse().getStatusCode());
+        Assertions.assertEquals(404, body.get("status").asInt());
+        Assertions.assertTrue(body.has("trace"));
+        Assertions.assertTrue(body.has("timestamp"));
+    }
+}
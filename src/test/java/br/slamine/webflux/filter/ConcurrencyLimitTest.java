@@ -0,0 +1,134 @@
+package br.slamine.webflux.filter;
+
+import br.slamine.webflux.config.ConcurrencyLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConcurrencyLimitTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final AtomicLong now = new AtomicLong();
+
+    private ConcurrencyLimit limit;
+
+    @BeforeEach
+    public void setup(){
+        ConcurrencyLimitProperties.Group group = new ConcurrencyLimitProperties.Group();
+        group.setName("reads");
+        group.setInitialLimit(4);
+        group.setMinLimit(2);
+        group.setMaxLimit(5);
+        group.setLatencyThreshold(Duration.ofMillis(100));
+        group.setBackoffRatio(0.5);
+        limit = new ConcurrencyLimit(group, now::get);
+    }
+
+    @Test
+    @DisplayName("tryAcquire rejects without waiting once the limit is in flight, and accepts again after a release")
+    public void tryAcquire_Rejects_WhenLimitIsInFlight(){
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertTrue(limit.tryAcquire());
+        }
+
+        Assertions.assertFalse(limit.tryAcquire());
+        Assertions.assertEquals(1, limit.getRejected());
+
+        limit.cancel();
+        Assertions.assertTrue(limit.tryAcquire());
+        Assertions.assertEquals(4, limit.getInFlight());
+    }
+
+    @Test
+    @DisplayName("release grows the limit by one on fast responses and halves it once per threshold on slow ones")
+    public void release_AdjustsLimit_FromLatency(){
+        fillAndRelease(FAST);
+        Assertions.assertEquals(5, limit.getLimit());
+        fillAndRelease(FAST);
+        Assertions.assertEquals(5, limit.getLimit());//max-limit
+
+        limit.tryAcquire();
+        limit.tryAcquire();
+        limit.release(SLOW, false);
+        limit.release(0, true);
+        Assertions.assertEquals(2, limit.getLimit());//Both came back within the same threshold: one decrease
+
+        now.addAndGet(SLOW);
+        limit.tryAcquire();
+        limit.release(SLOW, false);
+        Assertions.assertEquals(2, limit.getLimit());//min-limit
+    }
+
+    @Test
+    @DisplayName("the filter counts a 5xx response as a drop even when no error went through it")
+    public void filter_DecreasesLimit_WhenResponseIsServerError(){
+        ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties();
+        ConcurrencyLimitProperties.Group group = new ConcurrencyLimitProperties.Group();
+        group.setName("reads");
+        group.setInitialLimit(4);
+        group.setMinLimit(2);
+        group.setBackoffRatio(0.5);
+        properties.getGroups().add(group);
+        ConcurrencyLimitWebFilter filter = new ConcurrencyLimitWebFilter(properties);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        filter.bindTo(meterRegistry);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/animes/1"));
+
+        StepVerifier.create(filter.filter(exchange, serverExchange -> {
+                    serverExchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+                    return Mono.empty();
+                }))
+                .verifyComplete();
+
+        Assertions.assertEquals(2, meterRegistry.get("http.server.concurrency.limit").tag("group", "reads").gauge().value());
+    }
+
+    @Test
+    @DisplayName("the filter counts streams in their own group, so they don't hold the slots of the other reads")
+    public void filter_UseStreamGroup_WhenStreamIsAccepted(){
+        ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties();
+        ConcurrencyLimitProperties.Group streams = new ConcurrencyLimitProperties.Group();
+        streams.setName("streams");
+        streams.setAccepts(List.of(MediaType.APPLICATION_STREAM_JSON));
+        ConcurrencyLimitProperties.Group reads = new ConcurrencyLimitProperties.Group();
+        reads.setName("reads");
+        properties.getGroups().addAll(List.of(streams, reads));
+        ConcurrencyLimitWebFilter filter = new ConcurrencyLimitWebFilter(properties);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        filter.bindTo(meterRegistry);
+
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/animes").accept(MediaType.APPLICATION_STREAM_JSON)),
+                exchange -> Mono.never()).subscribe();
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/animes").accept(MediaType.ALL)),
+                exchange -> Mono.never()).subscribe();
+
+        Assertions.assertEquals(1, meterRegistry.get("http.server.concurrency.in.flight").tag("group", "streams").gauge().value());
+        Assertions.assertEquals(1, meterRegistry.get("http.server.concurrency.in.flight").tag("group", "reads").gauge().value());
+    }
+
+    private void fillAndRelease(long latency){
+        int inFlight = limit.getLimit();
+        for (int i = 0; i < inFlight; i++) {
+            limit.tryAcquire();
+        }
+        limit.release(latency, false);
+        for (int i = 1; i < inFlight; i++) {
+            limit.cancel();
+        }
+    }
+}
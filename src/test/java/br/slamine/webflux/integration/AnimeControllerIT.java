@@ -1,8 +1,17 @@
 package br.slamine.webflux.integration;
 
+import br.slamine.webflux.codec.AnimeJsonEncoder;
+import br.slamine.webflux.controller.AnimeStreamWriter;
 import br.slamine.webflux.domain.Anime;
+import br.slamine.webflux.domain.AnimePage;
+import br.slamine.webflux.domain.AnimePageVersion;
 import br.slamine.webflux.exception.CustomAttributes;
 import br.slamine.webflux.repository.AnimeRepository;
+import br.slamine.webflux.security.SignedTokenService;
+import br.slamine.webflux.service.AnimeBatchLoader;
+import br.slamine.webflux.service.AnimeCache;
+import br.slamine.webflux.service.AnimeImportService;
+import br.slamine.webflux.service.AnimeSearchIndex;
 import br.slamine.webflux.service.AnimeService;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,6 +24,7 @@ import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import org.springframework.web.reactive.function.BodyInserters;
 import reactor.blockhound.BlockHound;
 import reactor.blockhound.BlockingOperationError;
@@ -28,10 +38,11 @@ import java.util.concurrent.TimeUnit;
 
 import static br.slamine.webflux.util.AnimeCreator.createAnimeToBeSaved;
 import static br.slamine.webflux.util.AnimeCreator.createValidAnime;
+import static br.slamine.webflux.util.AnimeCreator.isAnimeToBeSaved;
 
 @ExtendWith(SpringExtension.class)//Used for JUnit-5
 @WebFluxTest//Init the content related to webflux but doesn't scan all package
-@Import({AnimeService.class, CustomAttributes.class})
+@Import({AnimeService.class, AnimeImportService.class, AnimeCache.class, AnimeSearchIndex.class, AnimeBatchLoader.class, AnimeStreamWriter.class, AnimeJsonEncoder.class, SignedTokenService.class, CustomAttributes.class})
 public class AnimeControllerIT {
     /**
      * Integration Test shouldn't use mock. It need to be executed in real scenario (e.g: real database)
@@ -40,6 +51,9 @@ public class AnimeControllerIT {
     @MockBean
     private AnimeRepository animeRepositoryMock;
 
+    @MockBean
+    private TransactionalOperator transactionalOperatorMock;
+
     @Autowired
     private WebTestClient testClient;
 
@@ -53,24 +67,35 @@ public class AnimeControllerIT {
 
     @BeforeEach
     public void setUp(){
-        BDDMockito.when(animeRepositoryMock.findAll())
+        BDDMockito.when(animeRepositoryMock.findPageVersion(ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt()))
+                .thenReturn(Mono.just(new AnimePageVersion(1, anime.getId(), null)));
+
+        BDDMockito.when(animeRepositoryMock.findPage(ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt()))
                 .thenReturn(Flux.just(anime));
 
         BDDMockito.when(animeRepositoryMock.findById(ArgumentMatchers.anyInt()))
                 .thenReturn(Mono.just(anime));
 
-        BDDMockito.when(animeRepositoryMock.save(createAnimeToBeSaved()))
+        //Lookups by id are batched, the batch answers what findById is stubbed to answer
+        BDDMockito.when(animeRepositoryMock.findAllById(ArgumentMatchers.<Iterable<Integer>>any()))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<Iterable<Integer>>getArgument(0))
+                        .concatMap(id -> animeRepositoryMock.findById(id.intValue())));
+
+        BDDMockito.when(animeRepositoryMock.save(ArgumentMatchers.argThat(isAnimeToBeSaved())))
                 .thenReturn(Mono.just(anime));
 
-        BDDMockito.when(animeRepositoryMock.saveAll(
-                List.of(createAnimeToBeSaved(), createAnimeToBeSaved())
-            )).thenReturn(Flux.just(anime, anime));
+        BDDMockito.when(animeRepositoryMock.insertAll(ArgumentMatchers.any(), ArgumentMatchers.anyInt()))
+                .thenAnswer(invocation -> invocation.<Flux<Anime>>getArgument(0)
+                        .map(animeToBeSaved -> animeToBeSaved.withId(anime.getId())));
 
-        BDDMockito.when(animeRepositoryMock.delete(ArgumentMatchers.any(Anime.class)))
-                .thenReturn(Mono.empty());
+        BDDMockito.when(transactionalOperatorMock.transactional(ArgumentMatchers.<Mono<?>>any()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
 
-        BDDMockito.when(animeRepositoryMock.save(createValidAnime()))
-                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepositoryMock.deleteAnime(ArgumentMatchers.anyInt()))
+                .thenReturn(Mono.just(1));
+
+        BDDMockito.when(animeRepositoryMock.updateName(ArgumentMatchers.anyInt(), ArgumentMatchers.anyString(), ArgumentMatchers.any()))
+                .thenReturn(Mono.just(anime));
     }
 
     @Test
@@ -89,8 +114,8 @@ public class AnimeControllerIT {
     }
 
     @Test
-    @DisplayName("listAll returns a flux of anime")
-    public void listAll_ReturnFluxOfAnime_WhenSuccessful(){
+    @DisplayName("listAll returns a page of anime")
+    public void listAll_ReturnPageOfAnime_WhenSuccessful(){
         testClient
                 .get()
                 .uri("/animes")
@@ -98,27 +123,28 @@ public class AnimeControllerIT {
                 .expectStatus()
                 .is2xxSuccessful()
                 .expectBody()
-                .jsonPath("$.[0].id")
+                .jsonPath("$.content[0].id")
                 .isEqualTo(anime.getId())
-                .jsonPath("$.[0].name")
-                .isEqualTo(anime.getName());
+                .jsonPath("$.content[0].name")
+                .isEqualTo(anime.getName())
+                .jsonPath("$.next")
+                .doesNotExist();
     }
 
     /**
      * ALERT: Don't do this in production
      */
     @Test
-    @DisplayName("listAll returns a flux of anime")
-    public void listAll_Flavor2_ReturnFluxOfAnime_WhenSuccessful(){
+    @DisplayName("listAll returns a page of anime")
+    public void listAll_Flavor2_ReturnPageOfAnime_WhenSuccessful(){
         testClient
                 .get()
-                .uri("/animes")
+                .uri("/animes?after=0&limit=10")
                 .exchange()
                 .expectStatus()
                 .isOk()
-                .expectBodyList(Anime.class)
-                .hasSize(1)
-                .contains(anime);
+                .expectBody(AnimePage.class)
+                .isEqualTo(new AnimePage(List.of(anime), null));
     }
 
     @Test
@@ -206,9 +232,6 @@ public class AnimeControllerIT {
     public void saveBatch_returnsMonoError_WhenContainsInvalidName(){
         Anime animeToBeSaved = createAnimeToBeSaved();
 
-        BDDMockito.when(animeRepositoryMock.saveAll(ArgumentMatchers.anyIterable()))
-                .thenReturn(Flux.just(animeToBeSaved, animeToBeSaved.withName("")));
-
         testClient
                 .post()
                 .uri("/animes/batch")
@@ -234,8 +257,8 @@ public class AnimeControllerIT {
     @Test
     @DisplayName("delete return Mono error when anime does not exist")
     public void delete_ReturnMonoError_WhenEmptyMonoIsReturned(){
-        BDDMockito.when(animeRepositoryMock.findById(ArgumentMatchers.anyInt()))
-                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepositoryMock.deleteAnime(ArgumentMatchers.anyInt()))
+                .thenReturn(Mono.just(0));
 
             testClient
                     .delete()
@@ -262,7 +285,7 @@ public class AnimeControllerIT {
     @Test
     @DisplayName("update returns Mono error when anime does not exists")
     public void update_ReturnMonoError_WhenEmptyMonoIsReturned(){
-        BDDMockito.when(animeRepositoryMock.findById(ArgumentMatchers.anyInt()))
+        BDDMockito.when(animeRepositoryMock.updateName(ArgumentMatchers.anyInt(), ArgumentMatchers.anyString(), ArgumentMatchers.any()))
                 .thenReturn(Mono.empty());
 
         testClient
@@ -0,0 +1,88 @@
+package br.slamine.webflux.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Collections;
+
+public class ReactiveTimingBeanPostProcessorTest {
+
+    public interface Greeter {
+        Mono<String> greet(String name);
+
+        Flux<String> greetAll();
+    }
+
+    public static class SimpleGreeter implements Greeter {
+        @Override
+        public Mono<String> greet(String name) {
+            return name.isEmpty() ? Mono.error(new IllegalArgumentException("Empty name")) : Mono.just("Hello " + name);
+        }
+
+        @Override
+        public Flux<String> greetAll() {
+            return Flux.just("Hello", "Hola");
+        }
+    }
+
+    private MeterRegistry meterRegistry;
+
+    private ReactiveTimingBeanPostProcessor postProcessor;
+
+    @BeforeEach
+    public void setup(){
+        meterRegistry = new SimpleMeterRegistry();
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("meterRegistry", meterRegistry);
+        postProcessor = new ReactiveTimingBeanPostProcessor(beanFactory.getBeanProvider(MeterRegistry.class),
+                Collections.singletonMap(Greeter.class, "greeter.invocations"));
+    }
+
+    @Test
+    @DisplayName("postProcessAfterInitialization times each subscription with its outcome when the bean has a matching type")
+    public void postProcessAfterInitialization_TimesEachSubscription_WhenBeanHasMatchingType(){
+        Greeter greeter = (Greeter) postProcessor.postProcessAfterInitialization(new SimpleGreeter(), "greeter");
+
+        Mono<String> greeting = greeter.greet("Slamine");
+        Assertions.assertEquals(0, timer("greet", "success").count(), "Nothing is recorded before subscribing");
+
+        StepVerifier.create(greeting.then(greeting)).expectNext("Hello Slamine").verifyComplete();
+        StepVerifier.create(greeter.greet("")).verifyError(IllegalArgumentException.class);
+        StepVerifier.create(greeter.greetAll().take(1)).expectNext("Hello").verifyComplete();
+
+        Assertions.assertEquals(2, timer("greet", "success").count());
+        Assertions.assertEquals(1, timer("greet", "error").count());
+        Assertions.assertEquals(1, timer("greetAll", "cancel").count());
+    }
+
+    @Test
+    @DisplayName("postProcessAfterInitialization adds the timing to the existing proxy when the bean is already proxied")
+    public void postProcessAfterInitialization_AddsTimingToExistingProxy_WhenBeanIsAlreadyProxied(){
+        Object proxy = new ProxyFactory(new SimpleGreeter()).getProxy();
+
+        Object processed = postProcessor.postProcessAfterInitialization(proxy, "greeter");
+        StepVerifier.create(((Greeter) processed).greetAll()).expectNextCount(2).verifyComplete();
+
+        Assertions.assertSame(proxy, processed);
+        Assertions.assertEquals(1, timer("greetAll", "success").count());
+        Assertions.assertSame("not a greeter", postProcessor.postProcessAfterInitialization("not a greeter", "other"));
+    }
+
+    private Timer timer(String method, String outcome){
+        return meterRegistry.get("greeter.invocations")
+                .tag("class", "Greeter")
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .timer();
+    }
+}
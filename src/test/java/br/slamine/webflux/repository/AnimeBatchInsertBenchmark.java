@@ -0,0 +1,91 @@
+package br.slamine.webflux.repository;
+
+import br.slamine.webflux.domain.Anime;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.r2dbc.connectionfactory.R2dbcTransactionManager;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.data.r2dbc.core.DefaultReactiveDataAccessStrategy;
+import org.springframework.data.r2dbc.dialect.DialectResolver;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares rows/second of the per-row saveAll against the chunked multi-row insertAll.
+ * It needs a real database (e.g. the docker-compose one), so it only runs when asked:
+ * mvn test -Dtest=AnimeBatchInsertBenchmark -Dbenchmark.r2dbc.url=r2dbc:postgresql://localhost:5432/postgres?schema=anime
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark.r2dbc.url", matches = ".+")
+public class AnimeBatchInsertBenchmark {
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 10_000);
+    private static final int CHUNK_SIZE = Integer.getInteger("benchmark.chunk-size", 500);
+    private static final int ROUNDS = Integer.getInteger("benchmark.rounds", 3);
+
+    private static ConnectionFactory connectionFactory;
+    private static DatabaseClient databaseClient;
+    private static AnimeRepository animeRepository;
+    private static TransactionalOperator transactionalOperator;
+
+    @BeforeAll
+    public static void setup(){
+        connectionFactory = ConnectionFactories.get(ConnectionFactoryOptions
+                .parse(System.getProperty("benchmark.r2dbc.url"))
+                .mutate()
+                .option(ConnectionFactoryOptions.USER, System.getProperty("benchmark.r2dbc.username", "root"))
+                .option(ConnectionFactoryOptions.PASSWORD, System.getProperty("benchmark.r2dbc.password", "root"))
+                .build());
+        databaseClient = DatabaseClient.create(connectionFactory);
+        R2dbcRepositoryFactory repositoryFactory = new R2dbcRepositoryFactory(databaseClient,
+                new DefaultReactiveDataAccessStrategy(DialectResolver.getDialect(connectionFactory)));
+        animeRepository = repositoryFactory.getRepository(AnimeRepository.class, new AnimeCustomRepositoryImpl(databaseClient));
+        transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+    }
+
+    @AfterEach
+    public void cleanUp(){
+        databaseClient.execute("DELETE FROM anime WHERE name LIKE 'benchmark-%'").then().block();
+    }
+
+    @Test
+    @DisplayName("saveAll (one INSERT per row) rows/second")
+    public void saveAll_RowsPerSecond(){
+        run("saveAll", animes -> animeRepository.saveAll(animes));
+    }
+
+    @Test
+    @DisplayName("insertAll (one multi-row INSERT per chunk) rows/second")
+    public void insertAll_RowsPerSecond(){
+        run("insertAll", animes -> animeRepository.insertAll(Flux.fromIterable(animes), CHUNK_SIZE));
+    }
+
+    private void run(String name, Function<List<Anime>, Flux<Anime>> insert){
+        for (int round = 0; round <= ROUNDS; round++) {
+            //saveAll sets the generated id on the given instances, so every round needs new ones
+            List<Anime> animes = IntStream.range(0, ROWS)
+                    .mapToObj(i -> Anime.builder().name("benchmark-" + i).build())
+                    .collect(Collectors.toList());
+
+            long start = System.nanoTime();
+            Long inserted = insert.apply(animes).as(transactionalOperator::transactional).count().block();
+            long elapsed = System.nanoTime() - start;
+
+            Assertions.assertEquals(ROWS, inserted);
+            if (round > 0) {//Round 0 is the warm up
+                log.info("{} round {}: {} rows in {} ms, {} rows/s", name, round, ROWS, elapsed / 1_000_000,
+                        String.format("%.0f", ROWS * 1e9 / elapsed));
+            }
+            cleanUp();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package br.slamine.webflux.security;
+
+import br.slamine.webflux.config.AuthProperties;
+import br.slamine.webflux.service.MyUserDetailsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(SpringExtension.class)
+public class CachingReactiveAuthenticationManagerTest {
+
+    @Mock
+    private ReactiveAuthenticationManager passwordAuthenticationManagerMock;
+
+    @Mock
+    private MyUserDetailsService userDetailsServiceMock;
+
+    private CachingReactiveAuthenticationManager authenticationManager;
+
+    private final UserDetails user = User.withUsername("slamine")
+            .password("{bcrypt}encoded")
+            .roles("USER")
+            .build();
+
+    private final UsernamePasswordAuthenticationToken credentials =
+            new UsernamePasswordAuthenticationToken("slamine", "slamine");
+
+    @BeforeEach
+    public void setup(){
+        authenticationManager = new CachingReactiveAuthenticationManager(passwordAuthenticationManagerMock,
+                userDetailsServiceMock, new AuthProperties.CredentialsCache());
+
+        BDDMockito.when(passwordAuthenticationManagerMock.authenticate(ArgumentMatchers.any()))
+                .thenReturn(Mono.just(new UsernamePasswordAuthenticationToken(user, user.getPassword(), user.getAuthorities())));
+
+        BDDMockito.when(userDetailsServiceMock.findByUsername("slamine"))
+                .thenReturn(Mono.just(user));
+    }
+
+    @Test
+    @DisplayName("authenticate checks the password only once for the same credentials")
+    public void authenticate_SkipPasswordCheck_WhenCredentialsWereVerified(){
+        StepVerifier.create(authenticationManager.authenticate(credentials)
+                        .then(authenticationManager.authenticate(credentials)))
+                .expectSubscription()
+                .expectNextMatches(authentication -> authentication.isAuthenticated()
+                        && authentication.getPrincipal().equals(user)
+                        && authentication.getAuthorities().containsAll(user.getAuthorities()))
+                .verifyComplete();
+
+        BDDMockito.verify(passwordAuthenticationManagerMock, BDDMockito.times(1)).authenticate(ArgumentMatchers.any());
+    }
+
+    @Test
+    @DisplayName("authenticate checks the password again when it changed after being verified")
+    public void authenticate_CheckPasswordAgain_WhenPasswordChanged(){
+        StepVerifier.create(authenticationManager.authenticate(credentials))
+                .expectSubscription()
+                .expectNextCount(1)
+                .verifyComplete();
+
+        BDDMockito.when(userDetailsServiceMock.findByUsername("slamine"))
+                .thenReturn(Mono.just(User.withUserDetails(user).password("{bcrypt}changed").build()));
+        BDDMockito.when(passwordAuthenticationManagerMock.authenticate(ArgumentMatchers.any()))
+                .thenReturn(Mono.error(new BadCredentialsException("Invalid Credentials")));
+
+        StepVerifier.create(authenticationManager.authenticate(credentials))
+                .expectSubscription()
+                .expectError(BadCredentialsException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("authenticate doesn't remember rejected credentials and reads the user again on the next attempt")
+    public void authenticate_CheckPasswordEveryTime_WhenCredentialsAreRejected(){
+        BDDMockito.when(passwordAuthenticationManagerMock.authenticate(ArgumentMatchers.any()))
+                .thenReturn(Mono.error(new BadCredentialsException("Invalid Credentials")));
+
+        StepVerifier.create(authenticationManager.authenticate(credentials)
+                        .onErrorResume(e -> authenticationManager.authenticate(credentials)))
+                .expectSubscription()
+                .expectError(BadCredentialsException.class)
+                .verify();
+
+        BDDMockito.verify(passwordAuthenticationManagerMock, BDDMockito.times(2)).authenticate(ArgumentMatchers.any());
+        BDDMockito.verify(userDetailsServiceMock, BDDMockito.never()).findByUsername(ArgumentMatchers.anyString());
+        BDDMockito.verify(userDetailsServiceMock, BDDMockito.times(2)).evict("slamine");
+    }
+}
@@ -0,0 +1,99 @@
+package br.slamine.webflux.security;
+
+import br.slamine.webflux.config.RateLimitProperties;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private final Authentication user = new UsernamePasswordAuthenticationToken("user", null,
+            AuthorityUtils.createAuthorityList("ROLE_USER"));
+
+    private final Authentication admin = new UsernamePasswordAuthenticationToken("admin", null,
+            AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN"));
+
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    public void setup(){
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRules(List.of(rule("ADMIN", 100, 10), rule("USER", 1, 2), rule(null, 1, 1)));
+        rateLimiter = new RateLimiter(properties, now::get);
+    }
+
+    @Test
+    @DisplayName("acquire accepts a burst, then rejects until the next token is due")
+    public void acquire_RejectsUntilNextToken_WhenBurstIsUsedUp(){
+        ServerHttpRequest request = MockServerHttpRequest.get("/animes/1").build();
+
+        Assertions.assertEquals(0, rateLimiter.acquire(request, user));
+        Assertions.assertEquals(0, rateLimiter.acquire(request, user));
+        Assertions.assertEquals(TimeUnit.SECONDS.toNanos(1), rateLimiter.acquire(request, user));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+        Assertions.assertEquals(TimeUnit.MILLISECONDS.toNanos(400), rateLimiter.acquire(request, user));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(400));
+        Assertions.assertEquals(0, rateLimiter.acquire(request, user));
+    }
+
+    @Test
+    @DisplayName("acquire uses the rule of the caller role and a bucket per user or per IP")
+    public void acquire_UsesRoleRuleAndBucketPerCaller_WhenCallersDiffer(){
+        ServerHttpRequest request = MockServerHttpRequest.get("/animes/1").build();
+        ServerHttpRequest anonymous = MockServerHttpRequest.get("/animes/1")
+                .remoteAddress(new InetSocketAddress("10.0.0.1", 4321)).build();
+        ServerHttpRequest otherAnonymous = MockServerHttpRequest.get("/animes/1")
+                .remoteAddress(new InetSocketAddress("10.0.0.2", 4321)).build();
+
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertEquals(0, rateLimiter.acquire(request, admin));
+        }
+        Assertions.assertTrue(rateLimiter.acquire(request, admin) > 0);
+        Assertions.assertEquals(0, rateLimiter.acquire(request, user));
+
+        Assertions.assertEquals(0, rateLimiter.acquire(anonymous, null));
+        Assertions.assertTrue(rateLimiter.acquire(anonymous, null) > 0);
+        Assertions.assertEquals(0, rateLimiter.acquire(otherAnonymous, null));
+    }
+
+    @Test
+    @DisplayName("acquirePasswordAttempt limits password checks per IP, whoever the request claims to be")
+    public void acquirePasswordAttempt_RejectsPerIp_WhenBurstIsUsedUp(){
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.getPasswordAttempts().setPermitsPerSecond(1);
+        properties.getPasswordAttempts().setBurst(2);
+        rateLimiter = new RateLimiter(properties, now::get);
+        ServerHttpRequest attempt = MockServerHttpRequest.get("/animes/1")
+                .remoteAddress(new InetSocketAddress("10.0.0.1", 4321)).build();
+        ServerHttpRequest otherIp = MockServerHttpRequest.get("/animes/1")
+                .remoteAddress(new InetSocketAddress("10.0.0.2", 4321)).build();
+
+        Assertions.assertEquals(0, rateLimiter.acquirePasswordAttempt(attempt));
+        Assertions.assertEquals(0, rateLimiter.acquirePasswordAttempt(attempt));
+        Assertions.assertEquals(TimeUnit.SECONDS.toNanos(1), rateLimiter.acquirePasswordAttempt(attempt));
+        Assertions.assertEquals(0, rateLimiter.acquirePasswordAttempt(otherIp));
+    }
+
+    private static RateLimitProperties.Rule rule(String role, double permitsPerSecond, int burst){
+        RateLimitProperties.Rule rule = new RateLimitProperties.Rule();
+        rule.setRole(role);
+        rule.setPermitsPerSecond(permitsPerSecond);
+        rule.setBurst(burst);
+        return rule;
+    }
+}
@@ -0,0 +1,63 @@
+package br.slamine.webflux.security;
+
+import br.slamine.webflux.config.AuthProperties;
+import br.slamine.webflux.domain.AuthToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.CredentialsExpiredException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+public class SignedTokenServiceTest {
+
+    private final UserDetails user = User.withUsername("slamine")
+            .password("{bcrypt}encoded")
+            .roles("USER", "ADMIN")
+            .build();
+
+    @Test
+    @DisplayName("verify returns the username and authorities of the user the token was issued to")
+    public void verify_ReturnsUserAndAuthorities_WhenTokenIsValid(){
+        SignedTokenService signedTokenService = new SignedTokenService(new AuthProperties());
+        AuthToken token = signedTokenService.issue(user);
+
+        Authentication authentication = signedTokenService.verify(token.getToken());
+
+        Assertions.assertEquals("Bearer", token.getTokenType());
+        Assertions.assertTrue(authentication.isAuthenticated());
+        Assertions.assertEquals("slamine", authentication.getName());
+        Assertions.assertEquals(user.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.toSet()),
+                authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.toSet()));
+    }
+
+    @Test
+    @DisplayName("verify throws BadCredentialsException when the token was tampered with or signed by another key")
+    public void verify_ThrowsBadCredentialsException_WhenTokenIsTamperedOrForeign(){
+        SignedTokenService signedTokenService = new SignedTokenService(new AuthProperties());
+        String token = signedTokenService.issue(user).getToken();
+        String tampered = "YWRtaW4" + token.substring(token.indexOf('.'));//"admin" as username
+
+        Assertions.assertThrows(BadCredentialsException.class, () -> signedTokenService.verify(tampered));
+        Assertions.assertThrows(BadCredentialsException.class, () -> signedTokenService.verify("not-a-token"));
+        Assertions.assertThrows(BadCredentialsException.class,
+                () -> new SignedTokenService(new AuthProperties()).verify(token));
+    }
+
+    @Test
+    @DisplayName("verify throws CredentialsExpiredException when the token is past its expiry")
+    public void verify_ThrowsCredentialsExpiredException_WhenTokenExpired(){
+        AuthProperties authProperties = new AuthProperties();
+        authProperties.getToken().setTimeToLive(Duration.ofSeconds(-1));
+        SignedTokenService signedTokenService = new SignedTokenService(authProperties);
+        String token = signedTokenService.issue(user).getToken();
+
+        Assertions.assertThrows(CredentialsExpiredException.class, () -> signedTokenService.verify(token));
+    }
+}
@@ -0,0 +1,68 @@
+package br.slamine.webflux.service;
+
+import br.slamine.webflux.config.AnimeProperties;
+import br.slamine.webflux.domain.Anime;
+import br.slamine.webflux.repository.AnimeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+@ExtendWith(SpringExtension.class)
+public class AnimeBatchLoaderTest {
+
+    @Mock
+    private AnimeRepository animeRepository;
+
+    private final AnimeProperties animeProperties = new AnimeProperties();
+
+    @BeforeEach
+    public void setup(){
+        //Every id but 404 exists
+        BDDMockito.when(animeRepository.findAllById(ArgumentMatchers.<Iterable<Integer>>any()))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<Iterable<Integer>>getArgument(0))
+                        .filter(id -> id != 404)
+                        .map(id -> Anime.builder().id(id).name("Anime " + id).build()));
+    }
+
+    @Test
+    @DisplayName("load sends the distinct ids of concurrent lookups in one query and each lookup gets its anime")
+    public void load_QueryOnce_WhenLookupsAreConcurrent(){
+        animeProperties.getLookup().setWindow(Duration.ofMillis(50));
+        AnimeBatchLoader animeBatchLoader = new AnimeBatchLoader(animeRepository, animeProperties);
+
+        StepVerifier.create(Flux.merge(animeBatchLoader.load(1), animeBatchLoader.load(2),
+                animeBatchLoader.load(2), animeBatchLoader.load(404)).map(Anime::getId).collectList())
+                .expectNextMatches(ids -> ids.size() == 3 && ids.containsAll(Set.of(1, 2)))
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository).findAllById(ArgumentMatchers.<Iterable<Integer>>argThat(ids ->
+                StreamSupport.stream(ids.spliterator(), false).collect(Collectors.toSet()).equals(Set.of(1, 2, 404))));
+        BDDMockito.verify(animeRepository, BDDMockito.never()).findById(ArgumentMatchers.anyInt());
+    }
+
+    @Test
+    @DisplayName("load sends a batch as soon as it is full, without waiting for the window")
+    public void load_QueryWithoutWaiting_WhenBatchIsFull(){
+        animeProperties.getLookup().setWindow(Duration.ofMinutes(1));
+        animeProperties.getLookup().setMaxBatchSize(2);
+        AnimeBatchLoader animeBatchLoader = new AnimeBatchLoader(animeRepository, animeProperties);
+
+        StepVerifier.create(Mono.zip(animeBatchLoader.load(1), animeBatchLoader.load(2)))
+                .expectNextMatches(animes -> animes.getT1().getId() == 1 && animes.getT2().getId() == 2)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+}
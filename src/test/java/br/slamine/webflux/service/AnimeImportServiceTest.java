@@ -0,0 +1,89 @@
+package br.slamine.webflux.service;
+
+import br.slamine.webflux.config.AnimeProperties;
+import br.slamine.webflux.domain.Anime;
+import br.slamine.webflux.domain.AnimeImportChunk;
+import br.slamine.webflux.repository.AnimeRepository;
+import br.slamine.webflux.util.AnimeCreator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@ExtendWith(SpringExtension.class)
+public class AnimeImportServiceTest {
+
+    @InjectMocks
+    private AnimeImportService animeImportService;
+
+    @Mock
+    private AnimeRepository animeRepository;
+
+    @Mock
+    private AnimeSearchIndex animeSearchIndex;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    @Spy
+    private AnimeProperties animeProperties = new AnimeProperties();
+
+    @Spy
+    private AnimeCache animeCache = new AnimeCache(animeProperties);
+
+    private final AtomicInteger ids = new AtomicInteger();
+
+    @BeforeEach
+    public void setup(){
+        animeProperties.getBatch().setChunkSize(2);
+
+        BDDMockito.when(animeRepository.insertAll(ArgumentMatchers.any(), ArgumentMatchers.anyInt()))
+                .thenAnswer(invocation -> invocation.<Flux<Anime>>getArgument(0)
+                        .map(anime -> anime.withId(ids.incrementAndGet())));
+
+        BDDMockito.when(transactionalOperator.transactional(ArgumentMatchers.<Mono<?>>any()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    @DisplayName("importAll inserts the animes chunk by chunk and reports every chunk")
+    public void importAll_ReportEveryChunk_WhenSuccessful(){
+        Flux<Anime> animes = Flux.range(0, 5).map(i -> AnimeCreator.createAnimeToBeSaved());
+
+        StepVerifier.create(animeImportService.importAll(animes))
+                .expectSubscription()
+                .expectNext(new AnimeImportChunk(0, 2, 2, 1, 2))
+                .expectNext(new AnimeImportChunk(1, 2, 4, 3, 4))
+                .expectNext(new AnimeImportChunk(2, 1, 5, 5, 5))
+                .verifyComplete();
+
+        BDDMockito.verify(transactionalOperator, BDDMockito.times(3)).transactional(ArgumentMatchers.<Mono<?>>any());
+    }
+
+    @Test
+    @DisplayName("importAll stops at the chunk that fails")
+    public void importAll_ReturnsError_WhenChunkFails(){
+        BDDMockito.doAnswer(invocation -> invocation.<Flux<Anime>>getArgument(0)
+                        .map(anime -> anime.withId(ids.incrementAndGet())))
+                .doReturn(Flux.error(new IllegalStateException("database is gone")))
+                .when(animeRepository).insertAll(ArgumentMatchers.any(), ArgumentMatchers.anyInt());
+
+        StepVerifier.create(animeImportService.importAll(Flux.range(0, 4).map(i -> AnimeCreator.createAnimeToBeSaved())))
+                .expectSubscription()
+                .expectNext(new AnimeImportChunk(0, 2, 2, 1, 2))
+                .expectError(IllegalStateException.class)
+                .verify();
+    }
+}
@@ -0,0 +1,119 @@
+package br.slamine.webflux.service;
+
+import br.slamine.webflux.config.AnimeProperties;
+import br.slamine.webflux.domain.Anime;
+import br.slamine.webflux.repository.AnimeRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import reactor.test.publisher.TestPublisher;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@ExtendWith(SpringExtension.class)
+public class AnimeSearchIndexTest {
+
+    @Mock
+    private AnimeRepository animeRepository;
+
+    private AnimeSearchIndex animeSearchIndex;
+
+    private final Anime naruto = anime(1, "Naruto", 0);
+    private final Anime shippuden = anime(2, "Naruto Shippūden", 0);
+    private final Anime boruto = anime(3, "Boruto: Naruto Next Generations", 0);
+    private final Anime onePiece = anime(4, "One Piece", 0);
+
+    @BeforeEach
+    public void setup(){
+        BDDMockito.when(animeRepository.findAll())
+                .thenReturn(Flux.just(naruto, shippuden, boruto, onePiece));
+        animeSearchIndex = new AnimeSearchIndex(animeRepository, new AnimeProperties());
+
+        StepVerifier.create(animeSearchIndex.rebuild())
+                .expectNext(4)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("search ranks whole words first, then names starting with the query, then shorter names")
+    public void search_RankMatches_WhenSeveralNamesMatch(){
+        Assertions.assertEquals(List.of(naruto, shippuden, boruto), animeSearchIndex.search("naruto", 10));
+        Assertions.assertEquals(List.of(naruto), animeSearchIndex.search("naruto", 1));
+    }
+
+    @Test
+    @DisplayName("search matches word prefixes and inner parts of words, ignoring case and accents")
+    public void search_MatchPrefixesAndSubstrings_WhenQueryIsPartOfAWord(){
+        Assertions.assertEquals(List.of(shippuden), animeSearchIndex.search("na SHIPPU", 10));
+        Assertions.assertEquals(List.of(shippuden), animeSearchIndex.search("ppuden", 10));
+        Assertions.assertEquals(List.of(onePiece), animeSearchIndex.search("o p", 10));
+        Assertions.assertEquals(List.of(), animeSearchIndex.search("aruto piece", 10));
+        Assertions.assertEquals(List.of(), animeSearchIndex.search(" - ", 10));
+    }
+
+    @Test
+    @DisplayName("put and remove update the index without a rebuild")
+    public void putAndRemove_UpdateIndex_WhenAnimesChange(){
+        animeSearchIndex.put(onePiece.withName("One Punch Man").withVersion(1L));
+        animeSearchIndex.remove(naruto.getId());
+
+        Assertions.assertEquals(List.of(), animeSearchIndex.search("piece", 10));
+        Assertions.assertEquals(List.of(onePiece.withName("One Punch Man").withVersion(1L)), animeSearchIndex.search("punch", 10));
+        Assertions.assertEquals(List.of(shippuden, boruto), animeSearchIndex.search("naruto", 10));
+    }
+
+    @Test
+    @DisplayName("search stays right while many writes go through the lists' deltas and rewrites")
+    public void search_ReturnCurrentNames_WhenManyAnimesAreWritten(){
+        List<Anime> slimes = IntStream.rangeClosed(10, 1_009)
+                .mapToObj(id -> anime(id, "Slime " + id, 0))
+                .collect(Collectors.toList());
+        animeSearchIndex.putAll(slimes);
+        for (int id = 10; id < 1_010; id += 2) {
+            animeSearchIndex.put(anime(id, "Overlord " + id, 1));
+        }
+        for (int id = 11; id < 1_010; id += 4) {
+            animeSearchIndex.remove(id);
+        }
+
+        Assertions.assertEquals(250, animeSearchIndex.search("slime", 1_000).size());
+        Assertions.assertEquals(List.of(anime(13, "Slime 13", 0)), animeSearchIndex.search("slime 13", 1));
+        Assertions.assertEquals(List.of(), animeSearchIndex.search("slime 1000", 10));
+        Assertions.assertEquals(List.of(), animeSearchIndex.search("slime 1003", 10));
+        Assertions.assertEquals(List.of(anime(1000, "Overlord 1000", 1)), animeSearchIndex.search("overlord 1000", 10));
+        Assertions.assertEquals(500, animeSearchIndex.search("over", 1_000).size());
+    }
+
+    @Test
+    @DisplayName("rebuild keeps the writes made while it reads the database")
+    public void rebuild_KeepWrites_WhenTheyHappenDuringRebuild(){
+        TestPublisher<Anime> animes = TestPublisher.create();
+        BDDMockito.when(animeRepository.findAll())
+                .thenReturn(animes.flux());
+
+        StepVerifier.create(animeSearchIndex.rebuild())
+                .then(() -> {
+                    animeSearchIndex.put(naruto.withName("Naruto Kai").withVersion(1L));
+                    animeSearchIndex.remove(onePiece.getId());
+                    animes.emit(naruto, shippuden, boruto, onePiece);
+                })
+                .expectNext(3)
+                .verifyComplete();
+
+        Assertions.assertEquals(List.of(naruto.withName("Naruto Kai").withVersion(1L)), animeSearchIndex.search("kai", 10));
+        Assertions.assertEquals(List.of(), animeSearchIndex.search("one", 10));
+    }
+
+    private static Anime anime(int id, String name, long version){
+        return Anime.builder().id(id).name(name).version(version).build();
+    }
+}
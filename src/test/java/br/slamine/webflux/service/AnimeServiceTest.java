@@ -1,15 +1,24 @@
 package br.slamine.webflux.service;
 
+import br.slamine.webflux.config.AnimeProperties;
 import br.slamine.webflux.domain.Anime;
+import br.slamine.webflux.domain.AnimeLookup;
+import br.slamine.webflux.domain.AnimePage;
+import br.slamine.webflux.exception.AnimeNotFoundException;
+import br.slamine.webflux.exception.AnimeVersionConflictException;
 import br.slamine.webflux.repository.AnimeRepository;
 import br.slamine.webflux.util.AnimeCreator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
 import org.mockito.BDDMockito;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.blockhound.BlockHound;
 import reactor.blockhound.BlockingOperationError;
@@ -19,6 +28,7 @@ import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 
@@ -31,8 +41,25 @@ public class AnimeServiceTest {
     @Mock
     private AnimeRepository animeRepository;
 
+    @Mock
+    private AnimeSearchIndex animeSearchIndex;
+
+    @Mock
+    private AnimeBatchLoader animeBatchLoader;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    @Spy
+    private AnimeProperties animeProperties = new AnimeProperties();
+
+    @Spy
+    private AnimeCache animeCache = new AnimeCache(animeProperties);
+
     private final Anime anime = AnimeCreator.createValidAnime();
 
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @BeforeAll
     public static void blockHoundSetup() {
         BlockHound.install();
@@ -55,27 +82,33 @@ public class AnimeServiceTest {
 
     @BeforeEach
     public void setup(){
+        animeCache.bindTo(meterRegistry);
+
+        //Unbatched, so the tests see one repository call per lookup
+        BDDMockito.when(animeBatchLoader.load(ArgumentMatchers.anyInt()))
+                .thenAnswer(invocation -> animeRepository.findById(invocation.<Integer>getArgument(0).intValue()));
+
         BDDMockito.when(animeRepository.findAll())
                 .thenReturn(Flux.just(anime));
 
         BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt()))
                 .thenReturn(Mono.just(anime));
 
-        BDDMockito.when(animeRepository.save(AnimeCreator.createAnimeToBeSaved()))
+        BDDMockito.when(animeRepository.save(ArgumentMatchers.argThat(AnimeCreator.isAnimeToBeSaved())))
                 .thenReturn(Mono.just(anime));
 
-        BDDMockito.when(animeRepository.saveAll(
-                List.of(
-                    AnimeCreator.createAnimeToBeSaved(),
-                    AnimeCreator.createAnimeToBeSaved()
-                )))
-                .thenReturn(Flux.just(anime, anime));
+        BDDMockito.when(animeRepository.insertAll(ArgumentMatchers.any(), ArgumentMatchers.anyInt()))
+                .thenAnswer(invocation -> invocation.<Flux<Anime>>getArgument(0)
+                        .map(animeToBeSaved -> animeToBeSaved.withId(anime.getId())));
 
-        BDDMockito.when(animeRepository.delete(ArgumentMatchers.any(Anime.class)))
-                .thenReturn(Mono.empty());
+        BDDMockito.when(transactionalOperator.transactional(ArgumentMatchers.<Mono<?>>any()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
 
-        BDDMockito.when(animeRepository.save(AnimeCreator.createValidAnime()))
-                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.deleteAnime(ArgumentMatchers.anyInt()))
+                .thenReturn(Mono.just(1));
+
+        BDDMockito.when(animeRepository.updateName(ArgumentMatchers.anyInt(), ArgumentMatchers.anyString(), ArgumentMatchers.any()))
+                .thenReturn(Mono.just(anime));
     }
 
     @Test
@@ -88,6 +121,44 @@ public class AnimeServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("findPage returns the page with the cursor of the next one when there are more animes")
+    public void findPage_ReturnPageWithNextCursor_WhenThereAreMoreAnimes(){
+        Anime secondAnime = anime.withId(2);
+        BDDMockito.when(animeRepository.findPage(0, 2))
+                .thenReturn(Flux.just(anime, secondAnime));
+
+        StepVerifier.create(animeService.findPage(0, 1))
+                .expectSubscription()
+                .expectNext(new AnimePage(List.of(anime), anime.getId()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("findPage returns the last page without next cursor")
+    public void findPage_ReturnPageWithoutNextCursor_WhenItIsTheLastPage(){
+        BDDMockito.when(animeRepository.findPage(0, 2))
+                .thenReturn(Flux.just(anime));
+
+        StepVerifier.create(animeService.findPage(0, 1))
+                .expectSubscription()
+                .expectNext(new AnimePage(List.of(anime), null))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("findPage never reads more than the max page size")
+    public void findPage_LimitPageSize_WhenLimitIsGreaterThanMaxSize(){
+        int maxSize = animeProperties.getPage().getMaxSize();
+        BDDMockito.when(animeRepository.findPage(0, maxSize + 1))
+                .thenReturn(Flux.just(anime));
+
+        StepVerifier.create(animeService.findPage(0, Integer.MAX_VALUE))
+                .expectSubscription()
+                .expectNext(new AnimePage(List.of(anime), null))
+                .verifyComplete();
+    }
+
     @Test
     @DisplayName("find by id returns mono with anime when it exist")
     public void findById_ReturnMonoOfAnime_WhenSuccessful(){
@@ -98,6 +169,55 @@ public class AnimeServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("find by id serves the anime from cache after the first read")
+    public void findById_ReturnCachedAnime_WhenAlreadyRead(){
+        StepVerifier.create(animeService.findById(1).then(animeService.findById(1)))
+                .expectSubscription()
+                .expectNext(anime)
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository, BDDMockito.times(1)).findById(1);
+        Assertions.assertEquals(1, cacheGets("anime", "hit"));
+        Assertions.assertEquals(1, cacheGets("anime", "miss"));
+    }
+
+    @Test
+    @DisplayName("find by id reads the database again after the anime is deleted")
+    public void findById_ReturnMonoError_WhenCachedAnimeIsDeleted(){
+        StepVerifier.create(animeService.findById(1).then(animeService.delete(1)))
+                .expectSubscription()
+                .verifyComplete();
+
+        BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt()))
+                .thenReturn(Mono.empty());
+
+        StepVerifier.create(animeService.findById(1))
+                .expectSubscription()
+                .expectError(ResponseStatusException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("save inserts a new anime whatever id and version the client sent")
+    public void save_IgnoreIdAndVersion_WhenClientSendsThem(){
+        StepVerifier.create(animeService.save(AnimeCreator.createValidAnime().withId(7).withVersion(3L)))
+                .expectSubscription()
+                .expectNext(anime)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("find by id returns the saved anime without reading the database")
+    public void findById_ReturnSavedAnime_WhenAnimeIsSaved(){
+        StepVerifier.create(animeService.save(AnimeCreator.createAnimeToBeSaved()).then(animeService.findById(1)))
+                .expectSubscription()
+                .expectNext(anime)
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository, BDDMockito.never()).findById(ArgumentMatchers.anyInt());
+    }
+
     @Test
     @DisplayName("find by id returns mono error when does not exist")
     public void findById_ReturnMonoError_WhenEmptyMonoReturned(){
@@ -110,6 +230,105 @@ public class AnimeServiceTest {
                 .verify();
     }
 
+    @Test
+    @DisplayName("find by id doesn't read the database again for an id known to be missing")
+    public void findById_ReturnMonoErrorFromNegativeCache_WhenIdIsKnownToBeMissing(){
+        BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt()))
+                .thenReturn(Mono.empty());
+
+        StepVerifier.create(animeService.findById(1).onErrorResume(e -> animeService.findById(1)))
+                .expectSubscription()
+                .expectError(AnimeNotFoundException.class)
+                .verify();
+
+        BDDMockito.verify(animeRepository, BDDMockito.times(1)).findById(1);
+        Assertions.assertEquals(1, cacheGets("anime.missing", "hit"));
+    }
+
+    @Test
+    @DisplayName("find by id returns the anime saved after it was known to be missing")
+    public void findById_ReturnMonoOfAnime_WhenMissingIdIsSaved(){
+        BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt()))
+                .thenReturn(Mono.empty());
+
+        StepVerifier.create(animeService.findById(1).onErrorResume(e -> Mono.empty()))
+                .expectSubscription()
+                .verifyComplete();
+
+        BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt()))
+                .thenReturn(Mono.just(anime));
+
+        StepVerifier.create(animeService.saveAll(List.of(AnimeCreator.createAnimeToBeSaved())).then(animeService.findById(1)))
+                .expectSubscription()
+                .expectNext(anime)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("find by id returns the anime saved by saveAll even when it was looked up before the commit")
+    public void findById_ReturnMonoOfAnime_WhenLookedUpDuringSaveAllTransaction(){
+        BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt()))
+                .thenReturn(Mono.empty(), Mono.just(anime));
+        //The lookup runs after the insert but before the commit, so it doesn't see the row yet
+        BDDMockito.when(transactionalOperator.transactional(ArgumentMatchers.<Mono<?>>any()))
+                .thenAnswer(invocation -> invocation.<Mono<?>>getArgument(0)
+                        .flatMap(inserted -> animeService.findById(1).onErrorResume(e -> Mono.empty()).thenReturn(inserted)));
+
+        StepVerifier.create(animeService.saveAll(List.of(AnimeCreator.createAnimeToBeSaved())).then(animeService.findById(1)))
+                .expectSubscription()
+                .expectNext(anime)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("findAllById reads the uncached animes in batches of the max batch size, keeping the requested order")
+    public void findAllById_ReadInBatches_WhenMoreIdsThanMaxBatchSize(){
+        animeProperties.getLookup().setMaxBatchSize(2);
+        BDDMockito.when(animeRepository.findAllById(ArgumentMatchers.<Iterable<Integer>>any()))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<Iterable<Integer>>getArgument(0))
+                        .map(id -> anime.withId(id)));
+
+        StepVerifier.create(animeService.findAllById(List.of(5, 2, 7)))
+                .expectSubscription()
+                .expectNext(new AnimeLookup(5, 200, anime.withId(5)),
+                        new AnimeLookup(2, 200, anime.withId(2)),
+                        new AnimeLookup(7, 200, anime.withId(7)))
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository).findAllById(ArgumentMatchers.<Iterable<Integer>>argThat(ids -> Set.of(5, 2).equals(ids)));
+        BDDMockito.verify(animeRepository).findAllById(ArgumentMatchers.<Iterable<Integer>>argThat(ids -> Set.of(7).equals(ids)));
+    }
+
+    @Test
+    @DisplayName("findAllById returns the animes in the requested order, reporting the missing ones, with one query for the uncached ones")
+    public void findAllById_ReturnLookupsInRequestOrder_WhenSomeAreMissing(){
+        animeCache.put(anime);
+        BDDMockito.when(animeRepository.findAllById(ArgumentMatchers.<Iterable<Integer>>any()))
+                .thenReturn(Flux.just(anime.withId(3)));
+
+        StepVerifier.create(animeService.findAllById(List.of(3, 1, 4, 3)))
+                .expectSubscription()
+                .expectNext(new AnimeLookup(3, 200, anime.withId(3)),
+                        new AnimeLookup(1, 200, anime),
+                        new AnimeLookup(4, 404, null))
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository).findAllById(ArgumentMatchers.<Iterable<Integer>>argThat(ids -> Set.of(3, 4).equals(ids)));
+        BDDMockito.verify(animeRepository, BDDMockito.never()).findById(ArgumentMatchers.anyInt());
+    }
+
+    @Test
+    @DisplayName("not found error is raised without a stack trace")
+    public void findById_ReturnStacklessError_WhenEmptyMonoReturned(){
+        BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt()))
+                .thenReturn(Mono.empty());
+
+        StepVerifier.create(animeService.findById(1))
+                .expectSubscription()
+                .expectErrorMatches(e -> e instanceof AnimeNotFoundException && e.getStackTrace().length == 0)
+                .verify();
+    }
+
     @Test
     @DisplayName("save creates an anime when successful")
     public void save_CreateAnime_WhenSuccessful(){
@@ -135,14 +354,40 @@ public class AnimeServiceTest {
     public void saveAll_ReturnsMonoError_WhenContainsInvalidName(){
         Anime animeTobeSaved = AnimeCreator.createAnimeToBeSaved();
 
-        BDDMockito.when(animeRepository.saveAll(ArgumentMatchers.anyIterable()))
-                .thenReturn(Flux.just(anime, anime.withName("")));
-
         StepVerifier.create(animeService.saveAll(List.of(animeTobeSaved, animeTobeSaved.withName(""))))
                 .expectSubscription()
-                .expectNext(anime)
                 .expectError(ResponseStatusException.class)
                 .verify();
+
+        BDDMockito.verify(animeSearchIndex, BDDMockito.never()).putAll(ArgumentMatchers.any());
+    }
+
+    @Test
+    @DisplayName("saveAll doesn't index the animes when the transaction fails to commit")
+    public void saveAll_DoNotIndex_WhenCommitFails(){
+        BDDMockito.when(transactionalOperator.transactional(ArgumentMatchers.<Mono<?>>any()))
+                .thenAnswer(invocation -> invocation.<Mono<?>>getArgument(0)
+                        .then(Mono.error(new IllegalStateException("Commit failed"))));
+
+        StepVerifier.create(animeService.saveAll(List.of(AnimeCreator.createAnimeToBeSaved())))
+                .expectSubscription()
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        BDDMockito.verify(animeSearchIndex, BDDMockito.never()).putAll(ArgumentMatchers.any());
+    }
+
+    @Test
+    @DisplayName("saveAll inserts the animes in chunks of the configured size")
+    public void saveAll_InsertInConfiguredChunks_WhenSuccessful(){
+        animeProperties.getBatch().setChunkSize(10);
+
+        StepVerifier.create(animeService.saveAll(List.of(AnimeCreator.createAnimeToBeSaved())))
+                .expectSubscription()
+                .expectNext(anime)
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository).insertAll(ArgumentMatchers.any(), ArgumentMatchers.eq(10));
     }
 
     @Test
@@ -156,8 +401,8 @@ public class AnimeServiceTest {
     @Test
     @DisplayName("delete return Mono error when anime does not exist")
     public void delete_ReturnMonoError_WhenEmptyMonoIsReturned(){
-        BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt()))
-                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.deleteAnime(ArgumentMatchers.anyInt()))
+                .thenReturn(Mono.just(0));
 
         StepVerifier.create(animeService.delete(1))
                 .expectSubscription()
@@ -173,10 +418,51 @@ public class AnimeServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("update writes with a single statement and refreshes the cache")
+    public void update_WriteWithoutReading_WhenSuccessful(){
+        Anime updatedAnime = AnimeCreator.createValidUpdatedAnime();
+        BDDMockito.when(animeRepository.updateName(ArgumentMatchers.eq(updatedAnime.getId()), ArgumentMatchers.eq(updatedAnime.getName()),
+                ArgumentMatchers.notNull()))
+                .thenReturn(Mono.just(updatedAnime));
+
+        StepVerifier.create(animeService.update(updatedAnime).then(animeService.findById(1)))
+                .expectSubscription()
+                .expectNext(updatedAnime)
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository, BDDMockito.never()).findById(ArgumentMatchers.anyInt());
+        BDDMockito.verify(animeRepository, BDDMockito.never()).save(ArgumentMatchers.any(Anime.class));
+    }
+
+    @Test
+    @DisplayName("update with an outdated version returns conflict and drops the cached anime")
+    public void update_ReturnConflict_WhenVersionIsOutdated(){
+        BDDMockito.when(animeRepository.updateNameIfVersion(ArgumentMatchers.anyInt(), ArgumentMatchers.anyString(),
+                ArgumentMatchers.any(), ArgumentMatchers.anyLong()))
+                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.existsById(1))
+                .thenReturn(Mono.just(true));
+        animeCache.put(anime);
+
+        StepVerifier.create(animeService.update(AnimeCreator.createValidUpdatedAnime().withVersion(1L), HttpStatus.PRECONDITION_FAILED))
+                .expectSubscription()
+                .expectErrorMatches(e -> e instanceof AnimeVersionConflictException
+                        && ((AnimeVersionConflictException) e).getStatus() == HttpStatus.PRECONDITION_FAILED)
+                .verify();
+
+        BDDMockito.verify(animeRepository, BDDMockito.never())
+                .updateName(ArgumentMatchers.anyInt(), ArgumentMatchers.anyString(), ArgumentMatchers.any());
+        StepVerifier.create(animeService.findById(1))
+                .expectNext(anime)
+                .verifyComplete();
+        BDDMockito.verify(animeRepository).findById(1);
+    }
+
     @Test
     @DisplayName("update returns Mono error when anime does not exists")
     public void update_ReturnMonoError_WhenEmptyMonoIsReturned(){
-        BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt()))
+        BDDMockito.when(animeRepository.updateName(ArgumentMatchers.anyInt(), ArgumentMatchers.anyString(), ArgumentMatchers.any()))
                 .thenReturn(Mono.empty());
 
         StepVerifier.create(animeService.update( AnimeCreator.createValidAnime()))
@@ -185,4 +471,7 @@ public class AnimeServiceTest {
                 .verify();
     }
 
+    private double cacheGets(String cache, String result){
+        return meterRegistry.get("cache.gets").tag("cache", cache).tag("result", result).functionCounter().count();
+    }
 }
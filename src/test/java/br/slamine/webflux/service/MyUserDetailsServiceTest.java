@@ -0,0 +1,80 @@
+package br.slamine.webflux.service;
+
+import br.slamine.webflux.config.AuthProperties;
+import br.slamine.webflux.domain.MyUser;
+import br.slamine.webflux.repository.MyUserRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+@ExtendWith(SpringExtension.class)
+public class MyUserDetailsServiceTest {
+
+    @Mock
+    private MyUserRepository userRepositoryMock;
+
+    private MyUserDetailsService userDetailsService;
+
+    private final MyUser user = new MyUser(1, "Slamine", "slamine", "{bcrypt}encoded", "ROLE_USER, ROLE_ADMIN");
+
+    @BeforeEach
+    public void setup(){
+        userDetailsService = new MyUserDetailsService(userRepositoryMock, new AuthProperties());
+
+        BDDMockito.when(userRepositoryMock.findByUsername("slamine"))
+                .thenReturn(Mono.just(user));
+        BDDMockito.when(userRepositoryMock.findByUsername("unknown"))
+                .thenReturn(Mono.empty());
+    }
+
+    @Test
+    @DisplayName("findByUsername queries the repository once when the user is requested again")
+    public void findByUsername_QueriesRepositoryOnce_WhenUserIsRequestedAgain(){
+        StepVerifier.create(userDetailsService.findByUsername("slamine")
+                .then(userDetailsService.findByUsername("slamine")))
+                .expectSubscription()
+                .expectNextMatches(details -> details.getUsername().equals("slamine")
+                        && details.getPassword().equals("{bcrypt}encoded"))
+                .verifyComplete();
+
+        Mockito.verify(userRepositoryMock, Mockito.times(1)).findByUsername("slamine");
+    }
+
+    @Test
+    @DisplayName("findByUsername queries the repository again when the user was not found or was evicted")
+    public void findByUsername_QueriesRepositoryAgain_WhenUserIsNotFoundOrEvicted(){
+        StepVerifier.create(userDetailsService.findByUsername("unknown")
+                .then(userDetailsService.findByUsername("unknown")))
+                .expectSubscription()
+                .verifyComplete();
+
+        userDetailsService.findByUsername("slamine").block();
+        userDetailsService.evict("slamine");
+        userDetailsService.findByUsername("slamine").block();
+
+        Mockito.verify(userRepositoryMock, Mockito.times(2)).findByUsername("unknown");
+        Mockito.verify(userRepositoryMock, Mockito.times(2)).findByUsername("slamine");
+    }
+
+    @Test
+    @DisplayName("findByUsername returns the cached user with the authorities parsed when it was loaded")
+    public void findByUsername_ReturnParsedAuthorities_WhenUserIsCached(){
+        UserDetails details = userDetailsService.findByUsername("slamine").block();
+
+        Assertions.assertNotNull(details);
+        Assertions.assertSame(details.getAuthorities(), userDetailsService.findByUsername("slamine").block().getAuthorities());
+        Assertions.assertEquals(AuthorityUtils.createAuthorityList("ROLE_ADMIN", "ROLE_USER"), List.copyOf(details.getAuthorities()));
+    }
+}
@@ -1,6 +1,7 @@
 package br.slamine.webflux.util;
 
 import br.slamine.webflux.domain.Anime;
+import org.mockito.ArgumentMatcher;
 
 public class AnimeCreator {
 
@@ -21,4 +22,11 @@ public class AnimeCreator {
                 .name("South Park. Season 2")
                 .build();
     }
+
+    //The service stamps updatedAt, so the anime it saves is never equal to the one it was given
+    public static ArgumentMatcher<Anime> isAnimeToBeSaved(){
+        Anime animeToBeSaved = createAnimeToBeSaved();
+        return anime -> anime != null && anime.getUpdatedAt() != null
+                && animeToBeSaved.equals(anime.withUpdatedAt(null));
+    }
 }